@@ -0,0 +1,66 @@
+package com.stremio.player.plugins.addon;
+
+import static org.junit.Assert.*;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.IOException;
+import java.io.StringReader;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Streaming parse of addon responses into the plugin's JSON objects. Runs on a device because
+ * {@link android.util.JsonReader} and org.json are not available on the host JVM.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AddonJsonReaderTest {
+
+    @Test
+    public void readObject_keepsIntegersAsLongs() throws Exception {
+        JSObject object = read("{\"small\": 42, \"negative\": -7, \"large\": 9007199254740993}");
+        assertEquals(Long.valueOf(42), object.get("small"));
+        assertEquals(Long.valueOf(-7), object.get("negative"));
+        // Past 2^53 a double would round this to ...992
+        assertEquals(Long.valueOf(9007199254740993L), object.get("large"));
+    }
+
+    @Test
+    public void readObject_readsFractionsAndExponentsAsDoubles() throws Exception {
+        JSObject object = read("{\"rating\": 7.5, \"exponent\": 1e3, \"upper\": 2E-2}");
+        assertEquals(Double.valueOf(7.5), object.get("rating"));
+        assertEquals(Double.valueOf(1000.0), object.get("exponent"));
+        assertEquals(Double.valueOf(0.02), object.get("upper"));
+    }
+
+    @Test
+    public void readObject_fallsBackToDoubleWhenTooLongForALong() throws Exception {
+        JSObject object = read("{\"huge\": 123456789012345678901234567890}");
+        assertEquals(Double.valueOf(1.2345678901234568E29), object.get("huge"));
+    }
+
+    @Test
+    public void readObject_buildsNestedValues() throws Exception {
+        JSObject object = read("{\"streams\": [{\"url\": \"https://cdn.example.com/a.mkv\", \"fileIdx\": 0,"
+            + " \"behaviorHints\": {\"notWebReady\": true, \"bingeGroup\": null}}]}");
+        JSArray streams = (JSArray) object.get("streams");
+        assertEquals(1, streams.length());
+        JSONObject stream = streams.getJSONObject(0);
+        assertEquals("https://cdn.example.com/a.mkv", stream.getString("url"));
+        assertEquals(Long.valueOf(0), stream.get("fileIdx"));
+        JSONObject hints = stream.getJSONObject("behaviorHints");
+        assertEquals(Boolean.TRUE, hints.get("notWebReady"));
+        assertTrue(hints.isNull("bingeGroup"));
+    }
+
+    @Test(expected = IOException.class)
+    public void readObject_rejectsTopLevelArray() throws Exception {
+        read("[1, 2, 3]");
+    }
+
+    private static JSObject read(String json) throws Exception {
+        return AddonJsonReader.readObject(new StringReader(json));
+    }
+}
@@ -0,0 +1,98 @@
+package com.stremio.player.plugins.exoplayer;
+
+import static org.junit.Assert.*;
+
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Cache keys built from stream URLs, and which URLs bypass the cache. Runs on a device because {@link Uri} is not available on
+ * the host JVM.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlayerCacheTest {
+
+    @Test
+    public void isManifest_onlyForAdaptivePlaylists() throws Exception {
+        assertTrue(PlayerCache.isManifest(Uri.parse("https://cdn.example.com/live/index.m3u8")));
+        assertTrue(PlayerCache.isManifest(Uri.parse("https://cdn.example.com/vod/manifest.mpd")));
+        assertFalse(PlayerCache.isManifest(Uri.parse("https://cdn.example.com/live/segment42.ts")));
+        assertFalse(PlayerCache.isManifest(Uri.parse("https://cdn.example.com/movie.mkv")));
+    }
+
+    @Test
+    public void buildCacheKey_keepsUrlWithoutQuery() throws Exception {
+        assertEquals("https://cdn.example.com/movie.mkv",
+            PlayerCache.buildCacheKey(Uri.parse("https://cdn.example.com/movie.mkv")));
+    }
+
+    @Test
+    public void buildCacheKey_dropsExpiringSignature() throws Exception {
+        String first = PlayerCache.buildCacheKey(Uri.parse(
+            "https://cdn.example.com/movie.mkv?id=42&expires=100&sig=xyz"));
+        String second = PlayerCache.buildCacheKey(Uri.parse(
+            "https://cdn.example.com/movie.mkv?id=42&expires=200&sig=uvw"));
+        assertEquals("https://cdn.example.com/movie.mkv?id=42", first);
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void buildCacheKey_keepsTokenThatNamesTheFile() throws Exception {
+        String first = PlayerCache.buildCacheKey(Uri.parse("https://proxy.example.com/play?token=fileA"));
+        String second = PlayerCache.buildCacheKey(Uri.parse("https://proxy.example.com/play?token=fileB"));
+        assertEquals("https://proxy.example.com/play?token=fileA", first);
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    public void buildCacheKey_keepsTokenNextToASignature() throws Exception {
+        assertEquals("https://proxy.example.com/play?token=fileA",
+            PlayerCache.buildCacheKey(Uri.parse(
+                "https://proxy.example.com/play?token=fileA&expires=100&signature=s")));
+    }
+
+    @Test
+    public void buildCacheKey_keepsSigningParamsWithoutTheirScheme() throws Exception {
+        // A lone key-pair-id, signature or expires is not a signing scheme
+        assertEquals("https://cdn.example.com/movie.mkv?Key-Pair-Id=k",
+            PlayerCache.buildCacheKey(Uri.parse("https://cdn.example.com/movie.mkv?Key-Pair-Id=k")));
+        assertEquals("https://cdn.example.com/movie.mkv?signature=a",
+            PlayerCache.buildCacheKey(Uri.parse("https://cdn.example.com/movie.mkv?signature=a")));
+        assertEquals("https://cdn.example.com/movie.mkv?expires=1",
+            PlayerCache.buildCacheKey(Uri.parse("https://cdn.example.com/movie.mkv?expires=1")));
+    }
+
+    @Test
+    public void buildCacheKey_keepsAmzParamsWithoutSignature() throws Exception {
+        assertEquals("https://bucket.example.com/movie.mkv?x-amz-meta-file=a",
+            PlayerCache.buildCacheKey(Uri.parse("https://bucket.example.com/movie.mkv?x-amz-meta-file=a")));
+    }
+
+    @Test
+    public void buildCacheKey_dropsCloudFrontAndS3Params() throws Exception {
+        assertEquals("https://cdn.example.com/movie.mkv",
+            PlayerCache.buildCacheKey(Uri.parse(
+                "https://cdn.example.com/movie.mkv?Policy=p&Signature=s&Key-Pair-Id=k")));
+        assertEquals("https://bucket.example.com/movie.mkv",
+            PlayerCache.buildCacheKey(Uri.parse(
+                "https://bucket.example.com/movie.mkv?X-Amz-Date=1&X-Amz-Signature=2&X-Amz-Expires=3")));
+    }
+
+    @Test
+    public void buildCacheKey_keepsContentIdentifyingParams() throws Exception {
+        String first = PlayerCache.buildCacheKey(Uri.parse("https://debrid.example.com/dl?hash=aaaa&key=1"));
+        String second = PlayerCache.buildCacheKey(Uri.parse("https://debrid.example.com/dl?hash=bbbb&key=1"));
+        String third = PlayerCache.buildCacheKey(Uri.parse("https://debrid.example.com/dl?hash=aaaa&key=2"));
+        assertNotEquals(first, second);
+        assertNotEquals(first, third);
+        assertEquals("https://debrid.example.com/dl?hash=aaaa&key=1", first);
+    }
+
+    @Test
+    public void buildCacheKey_keepsRepeatedParamsInOrder() throws Exception {
+        assertEquals("https://cdn.example.com/play?file=a&file=b",
+            PlayerCache.buildCacheKey(Uri.parse("https://cdn.example.com/play?file=a&sig=t&expires=1&file=b")));
+    }
+}
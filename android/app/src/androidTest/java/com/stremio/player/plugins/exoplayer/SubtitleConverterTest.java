@@ -0,0 +1,91 @@
+package com.stremio.player.plugins.exoplayer;
+
+import static org.junit.Assert.*;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Format sniffing, charset detection and conversion of external subtitles to WebVTT. Runs on a
+ * device because the TTML converter uses the platform's XML pull parser.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SubtitleConverterTest {
+
+    @Test
+    public void sniff_recognisesEachFormat() throws Exception {
+        assertEquals(SubtitleConverter.Format.VTT, SubtitleConverter.sniff("\uFEFFWEBVTT\n\n"));
+        assertEquals(SubtitleConverter.Format.SRT,
+            SubtitleConverter.sniff("1\n00:00:01,000 --> 00:00:02,500\nHello\n"));
+        assertEquals(SubtitleConverter.Format.ASS, SubtitleConverter.sniff("[Script Info]\nTitle: x\n"));
+        assertEquals(SubtitleConverter.Format.TTML,
+            SubtitleConverter.sniff("<?xml version=\"1.0\"?>\n<tt xmlns=\"http://www.w3.org/ns/ttml\">"));
+        assertEquals(SubtitleConverter.Format.UNKNOWN, SubtitleConverter.sniff("<html><body>404</body></html>"));
+    }
+
+    @Test
+    public void detectCharset_readsBomsAndFallsBackToWindows1252() throws Exception {
+        byte[] utf16 = {(byte) 0xff, (byte) 0xfe, '1', 0};
+        assertEquals(StandardCharsets.UTF_16LE, SubtitleConverter.detectCharset(utf16, utf16.length));
+
+        byte[] utf8 = "\u00c7a va, gar\u00e7on".getBytes(StandardCharsets.UTF_8);
+        assertEquals(StandardCharsets.UTF_8, SubtitleConverter.detectCharset(utf8, utf8.length));
+
+        byte[] latin = "\u00c7a va, gar\u00e7on".getBytes(Charset.forName("windows-1252"));
+        assertEquals(Charset.forName("windows-1252"), SubtitleConverter.detectCharset(latin, latin.length));
+    }
+
+    @Test
+    public void detectCharset_ignoresCharacterCutOffBySniffWindow() throws Exception {
+        byte[] utf8 = "abc\u00e9".getBytes(StandardCharsets.UTF_8);
+        // Drop the last byte of the two-byte e-acute
+        assertEquals(StandardCharsets.UTF_8, SubtitleConverter.detectCharset(utf8, utf8.length - 1));
+    }
+
+    @Test
+    public void convert_srtKeepsTimingAndText() throws Exception {
+        String vtt = convert(SubtitleConverter.Format.SRT,
+            "\uFEFF1\r\n00:01:02,5 --> 01:00:00,250\r\n<font color=\"red\"><i>Hello</i></font>\r\n\r\n");
+        assertEquals("WEBVTT\n\n1\n00:01:02.500 --> 01:00:00.250\n<i>Hello</i>\n\n", vtt);
+    }
+
+    @Test
+    public void convert_assUsesFormatLineAndStripsOverrides() throws Exception {
+        String vtt = convert(SubtitleConverter.Format.ASS,
+            "[Script Info]\nTitle: x\n\n[Events]\n"
+                + "Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text\n"
+                + "Dialogue: 0,0:00:01.50,0:00:03.05,Default,,0,0,0,,{\\i1}Hi, there\\NYou & me\n");
+        assertEquals("WEBVTT\n\n00:00:01.500 --> 00:00:03.050\nHi, there\nYou &amp; me\n\n", vtt);
+    }
+
+    @Test
+    public void convert_ttmlReadsClockTicksAndDuration() throws Exception {
+        String vtt = convert(SubtitleConverter.Format.TTML,
+            "<?xml version=\"1.0\"?>\n"
+                + "<tt xmlns=\"http://www.w3.org/ns/ttml\" xmlns:ttp=\"http://www.w3.org/ns/ttml#parameter\""
+                + " ttp:tickRate=\"10000000\"><body><div>"
+                + "<p begin=\"00:00:01.250\" end=\"00:00:02.000\">First<br/>line</p>"
+                + "<p begin=\"30000000t\" dur=\"1.5s\">Second</p>"
+                + "</div></body></tt>");
+        assertEquals("WEBVTT\n\n"
+            + "00:00:01.250 --> 00:00:02.000\nFirst\nline\n\n"
+            + "00:00:03.000 --> 00:00:04.500\nSecond\n\n", vtt);
+    }
+
+    @Test(expected = IOException.class)
+    public void convert_rejectsUnknownFormat() throws Exception {
+        convert(SubtitleConverter.Format.UNKNOWN, "not a subtitle");
+    }
+
+    private static String convert(SubtitleConverter.Format format, String input) throws Exception {
+        StringWriter output = new StringWriter();
+        SubtitleConverter.convert(format, new StringReader(input), output);
+        return output.toString();
+    }
+}
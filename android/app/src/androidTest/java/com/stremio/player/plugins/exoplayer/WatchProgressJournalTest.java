@@ -0,0 +1,90 @@
+package com.stremio.player.plugins.exoplayer;
+
+import static org.junit.Assert.*;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/**
+ * Replay of the memory-mapped progress journal after a crash and after compaction. Each test
+ * opens fresh journals on its own directory, as a restarted process would.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WatchProgressJournalTest {
+    // Key length, key, position, duration, updated-at, CRC
+    private static final int FIXED_RECORD_BYTES = 4 + 8 + 8 + 8 + 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replay_dropsTruncatedRecord() throws Exception {
+        File directory = folder.newFolder();
+        WatchProgressJournal journal = new WatchProgressJournal(directory);
+        journal.record("a", 1000, 5000);
+        journal.record("b", 2000, 6000);
+
+        // Cut the second record short as if the process died while writing its last bytes
+        int firstRecordBytes = FIXED_RECORD_BYTES + 1;
+        int secondRecordEnd = 2 * firstRecordBytes;
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "journal"), "rw")) {
+            file.seek(secondRecordEnd - 6);
+            file.write(new byte[6]);
+        }
+
+        WatchProgressJournal reopened = new WatchProgressJournal(directory);
+        assertEquals(1000, reopened.getEntry("a").positionMs);
+        assertEquals(5000, reopened.getEntry("a").durationMs);
+        assertNull(reopened.getEntry("b"));
+
+        // The torn tail was cleared, so a new record lands where the broken one was and replays
+        reopened.record("c", 3000, 7000);
+        WatchProgressJournal third = new WatchProgressJournal(directory);
+        assertEquals(1000, third.getEntry("a").positionMs);
+        assertNull(third.getEntry("b"));
+        assertEquals(3000, third.getEntry("c").positionMs);
+    }
+
+    @Test
+    public void compaction_keepsLatestEntryPerKey() throws Exception {
+        File directory = folder.newFolder();
+        WatchProgressJournal journal = new WatchProgressJournal(directory);
+        // 6000 records of 7-byte keys fill well over three quarters of the 256 KB mapping
+        int total = 6000;
+        for (int i = 0; i < total; i++) {
+            journal.record("title-" + (i % 10), i, 100000);
+        }
+        WatchProgressJournal.awaitBackgroundWork();
+
+        assertTrue(countRecords(new File(directory, "journal")) < total / 2);
+        assertFalse(new File(directory, "journal.tmp").exists());
+
+        WatchProgressJournal reopened = new WatchProgressJournal(directory);
+        assertEquals(10, reopened.query(null).size());
+        for (int key = 0; key < 10; key++) {
+            WatchProgressJournal.Entry entry = reopened.getEntry("title-" + key);
+            assertEquals(total - 10 + key, entry.positionMs);
+            assertEquals(100000, entry.durationMs);
+        }
+    }
+
+    private static int countRecords(File file) throws Exception {
+        int count = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int keyLength;
+            while (input.available() >= FIXED_RECORD_BYTES && (keyLength = input.readInt()) != 0) {
+                input.skipBytes(keyLength + FIXED_RECORD_BYTES - 4);
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -3,6 +3,8 @@ package com.stremio.player;
 import com.getcapacitor.BridgeActivity;
 import android.os.Bundle;
 import com.stremio.player.plugins.exoplayer.ExoPlayerPlugin;
+import com.stremio.player.plugins.addon.AddonClientPlugin;
+import com.stremio.player.image.ImageBridgeWebViewClient;
 import android.view.View;
 import android.view.WindowManager;
 import android.os.Build;
@@ -12,7 +14,10 @@ public class MainActivity extends BridgeActivity {
     @Override
     public void onCreate(Bundle savedInstanceState) {
         registerPlugin(ExoPlayerPlugin.class);
+        registerPlugin(AddonClientPlugin.class);
         super.onCreate(savedInstanceState);
+        // Serves downscaled posters and backdrops from /_image on the app origin
+        getBridge().setWebViewClient(new ImageBridgeWebViewClient(getBridge()));
         
         // Make status bar transparent
         getWindow().getDecorView().setSystemUiVisibility(
@@ -0,0 +1,125 @@
+package com.stremio.player.image;
+
+import android.net.Uri;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+import com.getcapacitor.Bridge;
+import com.getcapacitor.BridgeWebViewClient;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Capacitor's WebView client plus one route on the app's own origin:
+ * {@code /_image?url=<source>&w=<width>[&h=<height>]} answers with the source image downscaled by
+ * {@link ImagePipeline}. A memory hit is answered inline; anything else is answered with a stream
+ * that waits for the pipeline, so WebView request threads aren't held during fetch and decode.
+ * Every other request goes to Capacitor as before.
+ */
+public class ImageBridgeWebViewClient extends BridgeWebViewClient {
+    public static final String PATH = "/_image";
+    private static final int MAX_WIDTH = 1920;
+
+    private final Bridge bridge;
+
+    public ImageBridgeWebViewClient(Bridge bridge) {
+        super(bridge);
+        this.bridge = bridge;
+    }
+
+    @Override
+    public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+        Uri uri = request.getUrl();
+        if (!PATH.equals(uri.getPath()) || !"GET".equals(request.getMethod()) || !isAppOrigin(uri)) {
+            return super.shouldInterceptRequest(view, request);
+        }
+        String source = uri.getQueryParameter("url");
+        int width = parseDimension(uri.getQueryParameter("w"));
+        int height = parseDimension(uri.getQueryParameter("h"));
+        if (source == null || !source.startsWith("http") || width <= 0) {
+            return error(400, "Bad Request");
+        }
+
+        ImagePipeline pipeline = ImagePipeline.get(view.getContext());
+        byte[] cached = pipeline.getCached(source, width, height);
+        InputStream body = cached != null
+            ? new ByteArrayInputStream(cached)
+            : new PendingImageStream(pipeline.load(source, width, height));
+        WebResourceResponse response = new WebResourceResponse(ImagePipeline.MIME_TYPE, null, body);
+        Map<String, String> headers = new HashMap<>();
+        // Sized images never change for a given URL; let the WebView keep them too
+        headers.put("Cache-Control", "public, max-age=604800, immutable");
+        response.setResponseHeaders(headers);
+        return response;
+    }
+
+    private boolean isAppOrigin(Uri uri) {
+        Uri local = Uri.parse(bridge.getLocalUrl());
+        return local.getHost() != null && local.getHost().equals(uri.getHost());
+    }
+
+    private static int parseDimension(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.min(MAX_WIDTH, Math.max(0, Integer.parseInt(value)));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static WebResourceResponse error(int status, String reason) {
+        return new WebResourceResponse("text/plain", "utf-8", status, reason, null,
+            new ByteArrayInputStream(new byte[0]));
+    }
+
+    /** Blocks the WebView's reader, not the interceptor, until the pipeline has the bytes. */
+    private static final class PendingImageStream extends InputStream {
+        private final Future<byte[]> future;
+        private InputStream delegate;
+
+        PendingImageStream(Future<byte[]> future) {
+            this.future = future;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate().read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return delegate().read(buffer, offset, length);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return delegate != null ? delegate.available() : 0;
+        }
+
+        private InputStream delegate() throws IOException {
+            if (delegate == null) {
+                byte[] bytes;
+                try {
+                    bytes = future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted");
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+                if (bytes == null) {
+                    // Surfaces as a failed load, so the img element's onerror fires
+                    throw new IOException("Image unavailable");
+                }
+                delegate = new ByteArrayInputStream(bytes);
+            }
+            return delegate;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.stremio.player.image;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.util.LruCache;
+import com.stremio.player.plugins.exoplayer.PlayerCache;
+import com.stremio.player.plugins.exoplayer.PlayerNetwork;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Posters and backdrops for the web UI, fetched, decoded and shrunk to the size they are shown
+ * at on a small background pool. Results are re-encoded as WebP and kept in a memory LRU plus
+ * an LRU directory on disk, so scrolling a grid only ever hands the WebView small,
+ * already-sized images. Concurrent requests for the same image share one fetch. Thread-safe.
+ */
+public final class ImagePipeline {
+    public static final String MIME_TYPE = "image/webp";
+    private static final String CACHE_DIR = "images";
+    private static final long MAX_DISK_BYTES = 96L * 1024 * 1024;
+    private static final int MAX_MEMORY_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_THREADS = 4;
+    private static final int MAX_DIMENSION = 1920;
+    private static final int QUALITY = 82;
+    // Widths are rounded up to these so near-identical sizes share cache entries
+    private static final int[] WIDTH_BUCKETS = { 92, 154, 185, 240, 342, 500, 780, 1280, MAX_DIMENSION };
+    // TMDB serves pre-scaled renditions; fetching the smallest one that is large enough saves most of the bytes
+    private static final int[] TMDB_WIDTHS = { 92, 154, 185, 342, 500, 780 };
+
+    private static ImagePipeline instance;
+
+    private final File directory;
+    private final LruCache<String, byte[]> memory;
+    private final Map<String, Future<byte[]>> inFlight = new HashMap<>();
+    private final ThreadPoolExecutor executor;
+    private long diskBytes;
+
+    private ImagePipeline(File directory) {
+        this.directory = directory;
+        directory.mkdirs();
+        int memoryBytes = (int) Math.min(MAX_MEMORY_BYTES, Runtime.getRuntime().maxMemory() / 16);
+        memory = new LruCache<String, byte[]>(memoryBytes) {
+            @Override
+            protected int sizeOf(String key, byte[] value) {
+                return value.length;
+            }
+        };
+        executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "ImagePipeline");
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                diskBytes += file.length();
+            }
+        }
+    }
+
+    public static synchronized ImagePipeline get(Context context) {
+        if (instance == null) {
+            instance = new ImagePipeline(new File(context.getApplicationContext().getCacheDir(), CACHE_DIR));
+        }
+        return instance;
+    }
+
+    /**
+     * The encoded image for {@code url} fitted within {@code width} x {@code height} (0 leaves the
+     * height unconstrained) if it is in memory, else null.
+     */
+    public byte[] getCached(String url, int width, int height) {
+        return memory.get(buildKey(url, width, height));
+    }
+
+    /** Starts, or joins, the work for one image; the future yields null if it can't be loaded. */
+    public synchronized Future<byte[]> load(String url, int width, int height) {
+        int bucketWidth = bucketWidth(width);
+        int boundedHeight = height > 0 ? Math.min(height, MAX_DIMENSION) : 0;
+        String key = buildKey(url, width, height);
+        Future<byte[]> pending = inFlight.get(key);
+        if (pending != null) {
+            return pending;
+        }
+        FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                try {
+                    return produce(key, url, bucketWidth, boundedHeight);
+                } finally {
+                    synchronized (ImagePipeline.this) {
+                        inFlight.remove(key);
+                    }
+                }
+            }
+        });
+        inFlight.put(key, task);
+        executor.execute(task);
+        return task;
+    }
+
+    private byte[] produce(String key, String url, int width, int height) {
+        byte[] cached = memory.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        File file = new File(directory, PlayerCache.sha1Hex(key));
+        byte[] encoded = readFile(file);
+        if (encoded != null) {
+            // Touch for LRU eviction
+            file.setLastModified(System.currentTimeMillis());
+        } else {
+            byte[] original = fetch(sourceUrl(url, width));
+            encoded = original != null ? downscale(original, width, height) : null;
+            if (encoded == null) {
+                return null;
+            }
+            writeFile(file, encoded);
+        }
+        memory.put(key, encoded);
+        return encoded;
+    }
+
+    private static byte[] fetch(String url) {
+        Request request;
+        try {
+            request = new Request.Builder().url(url).build();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        try (Response response = PlayerNetwork.getHttpClient().newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                return null;
+            }
+            return body.bytes();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] downscale(byte[] original, int width, int height) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(original, 0, original.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+        float scale = (float) width / bounds.outWidth;
+        if (height > 0) {
+            scale = Math.min(scale, (float) height / bounds.outHeight);
+        }
+        scale = Math.min(1f, scale);
+        int targetWidth = Math.max(1, Math.round(bounds.outWidth * scale));
+        int targetHeight = Math.max(1, Math.round(bounds.outHeight * scale));
+
+        // Subsample while decoding so the full-size bitmap is never allocated
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        while (bounds.outWidth / (options.inSampleSize * 2) >= targetWidth
+                && bounds.outHeight / (options.inSampleSize * 2) >= targetHeight) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap decoded = BitmapFactory.decodeByteArray(original, 0, original.length, options);
+        if (decoded == null) {
+            return null;
+        }
+        Bitmap scaled = decoded;
+        if (decoded.getWidth() != targetWidth || decoded.getHeight() != targetHeight) {
+            scaled = Bitmap.createScaledBitmap(decoded, targetWidth, targetHeight, true);
+            decoded.recycle();
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        @SuppressWarnings("deprecation")
+        Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+            ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+        scaled.compress(format, QUALITY, output);
+        scaled.recycle();
+        return output.toByteArray();
+    }
+
+    /** For TMDB URLs, the smallest rendition at least {@code width} wide; other URLs as they are. */
+    private static String sourceUrl(String url, int width) {
+        Uri uri = Uri.parse(url);
+        List<String> segments = uri.getPathSegments();
+        if (!"image.tmdb.org".equals(uri.getHost()) || segments.size() < 4
+                || !"t".equals(segments.get(0)) || !"p".equals(segments.get(1))) {
+            return url;
+        }
+        String size = "original";
+        for (int candidate : TMDB_WIDTHS) {
+            if (candidate >= width) {
+                size = "w" + candidate;
+                break;
+            }
+        }
+        List<String> rewritten = new ArrayList<>(segments);
+        rewritten.set(2, size);
+        Uri.Builder builder = uri.buildUpon().path(null);
+        for (String segment : rewritten) {
+            builder.appendPath(segment);
+        }
+        return builder.build().toString();
+    }
+
+    private static String buildKey(String url, int width, int height) {
+        int boundedHeight = height > 0 ? Math.min(height, MAX_DIMENSION) : 0;
+        return url + "@" + bucketWidth(width) + "x" + boundedHeight;
+    }
+
+    private static int bucketWidth(int width) {
+        for (int bucket : WIDTH_BUCKETS) {
+            if (width <= bucket) {
+                return bucket;
+            }
+        }
+        return MAX_DIMENSION;
+    }
+
+    private static byte[] readFile(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStream input = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = input.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+            return offset == bytes.length ? bytes : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeFile(File file, byte[] bytes) {
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            output.write(bytes);
+        } catch (IOException e) {
+            e.printStackTrace();
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        synchronized (this) {
+            diskBytes += bytes.length;
+            if (diskBytes > MAX_DISK_BYTES) {
+                trimDisk();
+            }
+        }
+    }
+
+    /** Deletes least recently used files until the directory is back under three quarters of the cap. */
+    private void trimDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Snapshot the times first; they change under concurrent reads
+        Map<File, Long> lastModified = new HashMap<>();
+        long total = 0;
+        for (File file : files) {
+            lastModified.put(file, file.lastModified());
+            total += file.length();
+        }
+        List<File> byAge = Arrays.asList(files);
+        Collections.sort(byAge, (a, b) -> Long.compare(lastModified.get(a), lastModified.get(b)));
+        for (File file : byAge) {
+            if (total <= MAX_DISK_BYTES * 3 / 4) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+        diskBytes = total;
+    }
+}
@@ -0,0 +1,116 @@
+package com.stremio.player.plugins.addon;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import com.stremio.player.plugins.exoplayer.PlayerFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Native side of the addon protocol requests. fetch() sends a whole batch of addon requests at
+ * once and emits an {@value #EVENT_RESPONSE} event per request as it completes, so the web app
+ * can show the first streams while slower addons are still answering; the call itself resolves
+ * once the whole batch is done. Batches fetched with {@code cache: "staleWhileRevalidate"} are
+ * answered from the on-device response cache when possible, and emit {@value #EVENT_UPDATE}
+ * when a background revalidation brings a newer body.
+ */
+@CapacitorPlugin(name = "AddonClient")
+public class AddonClientPlugin extends Plugin {
+    public static final String EVENT_RESPONSE = "addonResponse";
+    public static final String EVENT_UPDATE = "addonUpdate";
+    private static final String CACHE_STALE_WHILE_REVALIDATE = "staleWhileRevalidate";
+    private static final long DEFAULT_TIMEOUT_MS = 15000;
+    private static final long MIN_TIMEOUT_MS = 1000;
+
+    private final Map<String, AddonFetcher> batches = new ConcurrentHashMap<>();
+
+    @PluginMethod
+    public void fetch(PluginCall call) {
+        String batchId = call.getString("batchId");
+        if (batchId == null) {
+            call.reject("batchId is required");
+            return;
+        }
+        List<AddonFetcher.AddonRequest> requests = AddonFetcher.AddonRequest.fromJson(call.getArray("requests"));
+        Map<String, String> headers = PlayerFactory.parseHeaders(call.getObject("headers"));
+        long timeoutMs = Math.max(MIN_TIMEOUT_MS, call.getLong("timeoutMs", DEFAULT_TIMEOUT_MS));
+        boolean staleWhileRevalidate = CACHE_STALE_WHILE_REVALIDATE.equals(call.getString("cache"));
+
+        AddonFetcher[] fetcherRef = new AddonFetcher[1];
+        AddonFetcher.Listener listener = new AddonFetcher.Listener() {
+            @Override
+            public void onResult(AddonFetcher.AddonRequest request, int status, long elapsedMs,
+                                 JSObject body, String error, boolean fromCache, boolean stale) {
+                JSObject data = new JSObject();
+                data.put("batchId", batchId);
+                data.put("id", request.id);
+                data.put("url", request.url);
+                data.put("ok", body != null);
+                data.put("status", status);
+                data.put("elapsedMs", elapsedMs);
+                data.put("fromCache", fromCache);
+                data.put("stale", stale);
+                data.put("data", body);
+                data.put("error", error);
+                notifyListeners(EVENT_RESPONSE, data);
+            }
+
+            @Override
+            public void onUpdate(AddonFetcher.AddonRequest request, JSObject body) {
+                JSObject data = new JSObject();
+                data.put("batchId", batchId);
+                data.put("id", request.id);
+                data.put("url", request.url);
+                data.put("data", body);
+                notifyListeners(EVENT_UPDATE, data);
+            }
+
+            @Override
+            public void onComplete(int succeeded, int failed, long elapsedMs) {
+                // A newer fetch may have taken over this batchId; leave its fetcher cancellable
+                batches.remove(batchId, fetcherRef[0]);
+                JSObject ret = new JSObject();
+                ret.put("batchId", batchId);
+                ret.put("succeeded", succeeded);
+                ret.put("failed", failed);
+                ret.put("elapsedMs", elapsedMs);
+                call.resolve(ret);
+            }
+        };
+        AddonFetcher fetcher = new AddonFetcher(getContext(), requests, headers, timeoutMs, staleWhileRevalidate, listener);
+        fetcherRef[0] = fetcher;
+        AddonFetcher previous = batches.put(batchId, fetcher);
+        if (previous != null) {
+            previous.cancel();
+        }
+        fetcher.start();
+    }
+
+    @PluginMethod
+    public void cancel(PluginCall call) {
+        String batchId = call.getString("batchId");
+        AddonFetcher fetcher = batchId != null ? batches.remove(batchId) : null;
+        if (fetcher != null) {
+            fetcher.cancel();
+        }
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void getCacheUsage(PluginCall call) {
+        JSObject ret = new JSObject();
+        ret.put("usedBytes", AddonResponseCache.getUsedBytes(getContext()));
+        ret.put("maxBytes", AddonResponseCache.MAX_BYTES);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void clearCache(PluginCall call) {
+        AddonResponseCache.clear(getContext());
+        call.resolve();
+    }
+}
@@ -0,0 +1,351 @@
+package com.stremio.player.plugins.addon;
+
+import android.content.Context;
+import android.os.SystemClock;
+import com.getcapacitor.JSObject;
+import com.stremio.player.plugins.exoplayer.PlayerNetwork;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Fans a batch of addon requests (stream, catalog, meta, subtitles) out at once. The dispatcher
+ * caps requests per host, so one addon with many catalogs can't starve the others, and each
+ * request has a hard deadline with one retry for transient failures. Responses are parsed on
+ * OkHttp's worker threads and handed to the listener as soon as each one arrives.
+ * <p>
+ * With {@code staleWhileRevalidate}, a response stored in {@link AddonResponseCache} is
+ * reported at once even if it has expired, and an expired one is then revalidated in the
+ * background; a changed body comes back through {@link Listener#onUpdate}. Without it the
+ * cache is neither read nor written.
+ */
+final class AddonFetcher {
+    private static final int MAX_REQUESTS = 32;
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+    private static final long RETRY_DELAY_MS = 500;
+    private static final CacheControl CACHED_ANY_AGE = new CacheControl.Builder()
+        .onlyIfCached()
+        .maxStale(Integer.MAX_VALUE, TimeUnit.SECONDS)
+        .build();
+    private static final CacheControl NO_CACHE = new CacheControl.Builder()
+        .noCache()
+        .noStore()
+        .build();
+
+    private static OkHttpClient client;
+    private static ScheduledExecutorService retryScheduler;
+
+    interface Listener {
+        /**
+         * One request finished; exactly one of {@code body} and {@code error} is set.
+         * {@code stale} marks a cached body past its freshness lifetime. Any thread.
+         */
+        void onResult(AddonRequest request, int status, long elapsedMs, JSObject body, String error,
+                      boolean fromCache, boolean stale);
+
+        /** Background revalidation of a stale result returned a different body. Any thread. */
+        void onUpdate(AddonRequest request, JSObject body);
+
+        /** Every request has reported. Any thread. */
+        void onComplete(int succeeded, int failed, long elapsedMs);
+    }
+
+    /** One endpoint to fetch; {@code id} is the caller's handle for the result. */
+    static final class AddonRequest {
+        final String id;
+        final String url;
+
+        AddonRequest(String id, String url) {
+            this.id = id;
+            this.url = url;
+        }
+
+        /** Parses {@code [{id, url}]}, skipping entries without a url; the id defaults to the url. */
+        static List<AddonRequest> fromJson(JSONArray array) {
+            List<AddonRequest> requests = new ArrayList<>();
+            if (array == null) {
+                return requests;
+            }
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject object = array.optJSONObject(i);
+                String url = object != null ? object.optString("url", null) : null;
+                if (url == null || url.isEmpty()) {
+                    continue;
+                }
+                requests.add(new AddonRequest(object.optString("id", url), url));
+            }
+            return requests;
+        }
+    }
+
+    private final Context context;
+    private final List<AddonRequest> requests;
+    private final Map<String, String> headers;
+    private final long timeoutMs;
+    private final boolean staleWhileRevalidate;
+    private final Listener listener;
+    private final Set<Call> calls = new HashSet<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile boolean cancelled;
+    private long startedAtMs;
+
+    AddonFetcher(Context context, List<AddonRequest> requests, Map<String, String> headers, long timeoutMs,
+                 boolean staleWhileRevalidate, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.requests = requests;
+        this.headers = headers;
+        this.timeoutMs = timeoutMs;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.listener = listener;
+    }
+
+    void start() {
+        startedAtMs = SystemClock.elapsedRealtime();
+        pending.set(requests.size());
+        if (requests.isEmpty()) {
+            listener.onComplete(0, 0, 0);
+            return;
+        }
+        for (AddonRequest request : requests) {
+            if (staleWhileRevalidate) {
+                enqueueCached(request, SystemClock.elapsedRealtime());
+            } else {
+                enqueue(request, SystemClock.elapsedRealtime(), true);
+            }
+        }
+    }
+
+    /** Drops every request still in flight; they report as cancelled. */
+    void cancel() {
+        cancelled = true;
+        synchronized (calls) {
+            for (Call call : calls) {
+                call.cancel();
+            }
+            calls.clear();
+        }
+    }
+
+    /** Answers from the cache at any age when possible, falling back to the network on a miss. */
+    private void enqueueCached(AddonRequest request, long requestStartMs) {
+        Call call = newCall(request, CACHED_ANY_AGE, timeoutMs);
+        if (call == null) {
+            finish(request, 0, requestStartMs, null, "Invalid URL");
+            return;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                forget(call);
+                enqueue(request, requestStartMs, true);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                forget(call);
+                JSObject parsed = null;
+                try (Response closing = response) {
+                    ResponseBody body = response.body();
+                    // OkHttp answers an only-if-cached miss with 504
+                    if (response.code() != 504 && response.isSuccessful() && body != null) {
+                        parsed = AddonJsonReader.readObject(body.charStream());
+                    }
+                } catch (Exception e) {
+                    // Unreadable entry: the network copy will replace it
+                    e.printStackTrace();
+                }
+                if (parsed == null) {
+                    enqueue(request, requestStartMs, true);
+                    return;
+                }
+                // OkHttp flags a response served past its freshness lifetime with warning 110
+                String warning = response.header("Warning");
+                boolean stale = warning != null && warning.startsWith("110");
+                finish(request, response.code(), requestStartMs, parsed, null, true, stale);
+                if (stale) {
+                    revalidate(request);
+                }
+            }
+        });
+    }
+
+    /** Conditional request for a stale entry; OkHttp adds If-None-Match / If-Modified-Since. */
+    private void revalidate(AddonRequest request) {
+        if (cancelled) {
+            return;
+        }
+        // Cache-Control left to the defaults, so the stored entry's validators are used
+        Call call = newCall(request, null, timeoutMs);
+        if (call == null) {
+            return;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                forget(call);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                forget(call);
+                try (Response closing = response) {
+                    Response network = response.networkResponse();
+                    ResponseBody body = response.body();
+                    if (network == null || network.code() == 304 || !response.isSuccessful() || body == null) {
+                        return;
+                    }
+                    // Reading the body to the end is what commits it to the cache
+                    listener.onUpdate(request, AddonJsonReader.readObject(body.charStream()));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    private void enqueue(AddonRequest request, long requestStartMs, boolean mayRetry) {
+        if (cancelled) {
+            finish(request, 0, requestStartMs, null, "Cancelled");
+            return;
+        }
+        long remaining = timeoutMs - (SystemClock.elapsedRealtime() - requestStartMs);
+        // Revalidating fills the cache for stale-while-revalidate batches; other batches bypass it
+        Call call = newCall(request, staleWhileRevalidate ? null : NO_CACHE, remaining);
+        if (call == null) {
+            finish(request, 0, requestStartMs, null, "Invalid URL");
+            return;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                forget(call);
+                if (mayRetry && canRetry(requestStartMs)) {
+                    retry(request, requestStartMs);
+                } else {
+                    finish(request, 0, requestStartMs, null,
+                        cancelled ? "Cancelled" : call.isCanceled() ? "Timeout" : e.getClass().getSimpleName());
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                forget(call);
+                try (Response closing = response) {
+                    int status = response.code();
+                    ResponseBody body = response.body();
+                    if (status >= 500 || status == 429) {
+                        if (mayRetry && canRetry(requestStartMs)) {
+                            retry(request, requestStartMs);
+                        } else {
+                            finish(request, status, requestStartMs, null, "HTTP " + status);
+                        }
+                    } else if (!response.isSuccessful() || body == null) {
+                        finish(request, status, requestStartMs, null, "HTTP " + status);
+                    } else {
+                        finish(request, status, requestStartMs, AddonJsonReader.readObject(body.charStream()), null);
+                    }
+                } catch (Exception e) {
+                    finish(request, response.code(), requestStartMs, null,
+                        cancelled ? "Cancelled" : "Invalid response: " + e.getClass().getSimpleName());
+                }
+            }
+        });
+    }
+
+    /** Builds and tracks a call, or returns null for a URL OkHttp can't parse. */
+    private Call newCall(AddonRequest request, CacheControl cacheControl, long callTimeoutMs) {
+        Request.Builder builder;
+        try {
+            builder = new Request.Builder().url(request.url).header("Accept", "application/json");
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                builder.header(header.getKey(), header.getValue());
+            }
+        }
+        if (cacheControl != null) {
+            builder.cacheControl(cacheControl);
+        }
+        Call call = getClient(context).newBuilder()
+            .callTimeout(Math.max(1, callTimeoutMs), TimeUnit.MILLISECONDS)
+            .build()
+            .newCall(builder.build());
+        synchronized (calls) {
+            calls.add(call);
+        }
+        return call;
+    }
+
+    private boolean canRetry(long requestStartMs) {
+        return !cancelled && SystemClock.elapsedRealtime() - requestStartMs + RETRY_DELAY_MS < timeoutMs;
+    }
+
+    private void retry(AddonRequest request, long requestStartMs) {
+        getRetryScheduler().schedule(() -> enqueue(request, requestStartMs, false),
+            RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void forget(Call call) {
+        synchronized (calls) {
+            calls.remove(call);
+        }
+    }
+
+    private void finish(AddonRequest request, int status, long requestStartMs, JSObject body, String error) {
+        finish(request, status, requestStartMs, body, error, false, false);
+    }
+
+    private void finish(AddonRequest request, int status, long requestStartMs, JSObject body, String error,
+                        boolean fromCache, boolean stale) {
+        if (body == null) {
+            failed.incrementAndGet();
+        }
+        listener.onResult(request, status, SystemClock.elapsedRealtime() - requestStartMs, body, error,
+            fromCache, stale);
+        if (pending.decrementAndGet() == 0) {
+            int failures = failed.get();
+            listener.onComplete(requests.size() - failures, failures, SystemClock.elapsedRealtime() - startedAtMs);
+        }
+    }
+
+    private static synchronized OkHttpClient getClient(Context context) {
+        if (client == null) {
+            // Own dispatcher for the limits; connections and TLS sessions are shared with playback
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(MAX_REQUESTS);
+            dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+            client = PlayerNetwork.getHttpClient().newBuilder()
+                .dispatcher(dispatcher)
+                .cache(AddonResponseCache.get(context))
+                .build();
+        }
+        return client;
+    }
+
+    private static synchronized ScheduledExecutorService getRetryScheduler() {
+        if (retryScheduler == null) {
+            retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "AddonFetcherRetry"));
+        }
+        return retryScheduler;
+    }
+}
@@ -0,0 +1,73 @@
+package com.stremio.player.plugins.addon;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.IOException;
+import java.io.Reader;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Builds the plugin's JSON objects straight from an addon response stream, token by token, so
+ * a large stream or catalog list is never held as one string next to its parsed copy.
+ */
+final class AddonJsonReader {
+    private AddonJsonReader() {}
+
+    /** Reads one top-level object; addon endpoints always answer with an object. */
+    static JSObject readObject(Reader source) throws IOException, JSONException {
+        try (JsonReader reader = new JsonReader(source)) {
+            reader.setLenient(true);
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                throw new IOException("Expected a JSON object");
+            }
+            return (JSObject) readValue(reader);
+        }
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                JSObject object = new JSObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    object.put(name, readValue(reader));
+                }
+                reader.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                JSArray array = new JSArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return parseNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new IOException("Unexpected token " + reader.peek());
+        }
+    }
+
+    private static Object parseNumber(String text) {
+        if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                // Too long for a long; fall through to double
+            }
+        }
+        return Double.parseDouble(text);
+    }
+}
@@ -0,0 +1,43 @@
+package com.stremio.player.plugins.addon;
+
+import android.content.Context;
+import java.io.File;
+import okhttp3.Cache;
+
+/**
+ * On-disk HTTP cache for addon responses (manifests, catalogs, meta), shared by every
+ * AddonFetcher. OkHttp stores responses according to their Cache-Control, revalidates them with
+ * ETag / Last-Modified and evicts the least recently used entries past {@link #MAX_BYTES}.
+ */
+final class AddonResponseCache {
+    private static final String CACHE_DIR = "addon-http";
+    static final long MAX_BYTES = 32L * 1024 * 1024; // 32 MB
+
+    private static Cache cache;
+
+    private AddonResponseCache() {}
+
+    static synchronized Cache get(Context context) {
+        if (cache == null) {
+            cache = new Cache(new File(context.getApplicationContext().getCacheDir(), CACHE_DIR), MAX_BYTES);
+        }
+        return cache;
+    }
+
+    static synchronized long getUsedBytes(Context context) {
+        try {
+            return get(context).size();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    static synchronized void clear(Context context) {
+        try {
+            get(context).evictAll();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.util.Util;
+import java.util.Objects;
+import org.json.JSONObject;
+
+/**
+ * LoadControl whose forward buffer follows playback speed and measured bandwidth, with a
+ * back buffer sized so DoubleTapController's -10 s seeks land in already-loaded media.
+ * Total buffered bytes never exceed a memory ceiling derived from the app's heap class.
+ * All callbacks arrive on the playback thread.
+ */
+public class AdaptiveLoadControl implements LoadControl {
+    private static final int DEFAULT_MIN_BUFFER_MS = 20000;
+    private static final int DEFAULT_MAX_BUFFER_MS = 60000;
+    private static final int DEFAULT_BUFFER_FOR_PLAYBACK_MS = 1500;
+    private static final int DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS = 4000;
+    private static final int DEFAULT_BACK_BUFFER_MS = 30000;
+    private static final int MIN_FORWARD_BUFFER_MS = 5000; // floor for slow-motion playback
+    private static final double LOW_HEADROOM = 1.5;   // bandwidth / bitrate below this is a slow network
+    private static final double HIGH_HEADROOM = 4.0;  // above this the network can refill quickly
+    private static final int MIN_TARGET_BUFFER_BYTES = 16 * 1024 * 1024;
+
+    private final DefaultAllocator allocator;
+    private final DefaultBandwidthMeter bandwidthMeter;
+    private final long minBufferUs;
+    private final long maxBufferUs;
+    private final long bufferForPlaybackUs;
+    private final long bufferForPlaybackAfterRebufferUs;
+    private final long backBufferDurationUs;
+    private final int targetBufferBytes;
+
+    private ExoTrackSelection[] trackSelections = new ExoTrackSelection[0];
+    private boolean isLoading;
+
+    /** Buffer settings accepted from ExoPlayerPlugin.play() options; zero or negative means default. */
+    public static final class Config {
+        public int minBufferMs = DEFAULT_MIN_BUFFER_MS;
+        public int maxBufferMs = DEFAULT_MAX_BUFFER_MS;
+        public int bufferForPlaybackMs = DEFAULT_BUFFER_FOR_PLAYBACK_MS;
+        public int bufferForPlaybackAfterRebufferMs = DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS;
+        public int backBufferMs = DEFAULT_BACK_BUFFER_MS;
+        public int maxBufferMb = 0; // 0 = derive from the device's memory class
+
+        public static Config fromJson(JSONObject object) {
+            Config config = new Config();
+            if (object == null) {
+                return config;
+            }
+            try {
+                config.minBufferMs = positiveOr(object.optInt("minBufferMs"), config.minBufferMs);
+                config.maxBufferMs = positiveOr(object.optInt("maxBufferMs"), config.maxBufferMs);
+                config.bufferForPlaybackMs = positiveOr(object.optInt("bufferForPlaybackMs"), config.bufferForPlaybackMs);
+                config.bufferForPlaybackAfterRebufferMs = positiveOr(
+                    object.optInt("bufferForPlaybackAfterRebufferMs"), config.bufferForPlaybackAfterRebufferMs);
+                config.backBufferMs = object.has("backBufferMs")
+                    ? Math.max(0, object.optInt("backBufferMs")) : config.backBufferMs;
+                config.maxBufferMb = Math.max(0, object.optInt("maxBufferMb"));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            config.maxBufferMs = Math.max(config.maxBufferMs, config.minBufferMs);
+            return config;
+        }
+
+        private static int positiveOr(int value, int fallback) {
+            return value > 0 ? value : fallback;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Config)) {
+                return false;
+            }
+            Config config = (Config) other;
+            return minBufferMs == config.minBufferMs
+                && maxBufferMs == config.maxBufferMs
+                && bufferForPlaybackMs == config.bufferForPlaybackMs
+                && bufferForPlaybackAfterRebufferMs == config.bufferForPlaybackAfterRebufferMs
+                && backBufferMs == config.backBufferMs
+                && maxBufferMb == config.maxBufferMb;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(minBufferMs, maxBufferMs, bufferForPlaybackMs,
+                bufferForPlaybackAfterRebufferMs, backBufferMs, maxBufferMb);
+        }
+    }
+
+    public AdaptiveLoadControl(Context context, Config config) {
+        allocator = new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+        bandwidthMeter = DefaultBandwidthMeter.getSingletonInstance(context);
+        minBufferUs = Util.msToUs(config.minBufferMs);
+        maxBufferUs = Util.msToUs(config.maxBufferMs);
+        bufferForPlaybackUs = Util.msToUs(config.bufferForPlaybackMs);
+        bufferForPlaybackAfterRebufferUs = Util.msToUs(config.bufferForPlaybackAfterRebufferMs);
+        backBufferDurationUs = Util.msToUs(config.backBufferMs);
+        targetBufferBytes = computeTargetBufferBytes(context, config.maxBufferMb);
+    }
+
+    private static int computeTargetBufferBytes(Context context, int maxBufferMb) {
+        // Media buffers live on the Java heap; never let them take more than half of it
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long heapCeiling = activityManager != null
+            ? (long) activityManager.getMemoryClass() * 1024 * 1024 / 2
+            : Integer.MAX_VALUE;
+        long requested = maxBufferMb > 0 ? (long) maxBufferMb * 1024 * 1024 : heapCeiling;
+        return (int) Math.max(MIN_TARGET_BUFFER_BYTES, Math.min(requested, heapCeiling));
+    }
+
+    @Override
+    public void onPrepared() {
+        reset(false);
+    }
+
+    @Override
+    public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+                                 ExoTrackSelection[] trackSelections) {
+        this.trackSelections = trackSelections;
+    }
+
+    @Override
+    public void onStopped() {
+        reset(true);
+    }
+
+    @Override
+    public void onReleased() {
+        reset(true);
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return allocator;
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+        return backBufferDurationUs;
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe() {
+        // Seeks into the back buffer need a keyframe to start decoding from
+        return true;
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long playbackPositionUs, long bufferedDurationUs, float playbackSpeed) {
+        boolean targetBufferSizeReached = allocator.getTotalBytesAllocated() >= targetBufferBytes;
+
+        // bufferedDurationUs is media time; at 2x the same wall-clock cushion needs twice the media
+        double networkFactor = getNetworkFactor();
+        long scaledMinBufferUs = Math.max(Util.msToUs(MIN_FORWARD_BUFFER_MS),
+            (long) (minBufferUs * playbackSpeed * networkFactor));
+        long scaledMaxBufferUs = Math.max(scaledMinBufferUs, (long) (maxBufferUs * playbackSpeed));
+
+        if (bufferedDurationUs < scaledMinBufferUs) {
+            isLoading = !targetBufferSizeReached;
+        } else if (bufferedDurationUs >= scaledMaxBufferUs || targetBufferSizeReached) {
+            isLoading = false;
+        } // Otherwise keep the current state to avoid toggling around the thresholds
+        return isLoading;
+    }
+
+    @Override
+    public boolean shouldStartPlayback(long bufferedDurationUs, float playbackSpeed,
+                                       boolean rebuffering, long targetLiveOffsetUs) {
+        bufferedDurationUs = Util.getPlayoutDurationForMediaDuration(bufferedDurationUs, playbackSpeed);
+        long minBufferDurationUs = rebuffering ? bufferForPlaybackAfterRebufferUs : bufferForPlaybackUs;
+        if (targetLiveOffsetUs != C.TIME_UNSET) {
+            minBufferDurationUs = Math.min(targetLiveOffsetUs / 2, minBufferDurationUs);
+        }
+        return minBufferDurationUs <= 0
+            || bufferedDurationUs >= minBufferDurationUs
+            || allocator.getTotalBytesAllocated() >= targetBufferBytes;
+    }
+
+    /** Widens the low-water mark when bandwidth barely covers the stream, narrows it when there is headroom. */
+    private double getNetworkFactor() {
+        long selectedBitrate = 0;
+        for (ExoTrackSelection selection : trackSelections) {
+            if (selection != null) {
+                Format format = selection.getSelectedFormat();
+                if (format.bitrate != Format.NO_VALUE) {
+                    selectedBitrate += format.bitrate;
+                }
+            }
+        }
+        long estimate = bandwidthMeter.getBitrateEstimate();
+        if (selectedBitrate <= 0 || estimate <= 0) {
+            return 1.0;
+        }
+        double headroom = (double) estimate / selectedBitrate;
+        if (headroom < LOW_HEADROOM) {
+            return 1.5;
+        } else if (headroom > HIGH_HEADROOM) {
+            return 0.75;
+        }
+        return 1.0;
+    }
+
+    private void reset(boolean resetAllocator) {
+        isLoading = false;
+        if (resetAllocator) {
+            allocator.reset();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import com.google.android.exoplayer2.upstream.DataSource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Trickplay from a Roku BIF file: a header, a (timestamp, offset) index and concatenated JPEGs.
+ * Only the header and index are fetched up front; each image is a range request of its own.
+ */
+public class BifThumbnailSource implements ThumbnailSource {
+    static final byte[] MAGIC = { (byte) 0x89, 'B', 'I', 'F', 0x0d, 0x0a, 0x1a, 0x0a };
+    private static final int HEADER_BYTES = 64;
+    private static final int INDEX_ENTRY_BYTES = 8;
+
+    private final DataSource.Factory dataSourceFactory;
+    private final Uri uri;
+    private final long[] timestampsMs;
+    private final long[] offsets; // one more than timestamps; the last marks the end of the data
+
+    private BifThumbnailSource(DataSource.Factory dataSourceFactory, Uri uri, long[] timestampsMs, long[] offsets) {
+        this.dataSourceFactory = dataSourceFactory;
+        this.uri = uri;
+        this.timestampsMs = timestampsMs;
+        this.offsets = offsets;
+    }
+
+    /** Reads the BIF index; returns null if the file is not a usable BIF. */
+    public static BifThumbnailSource open(DataSource.Factory dataSourceFactory, Uri uri) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(PlayerNetwork.readBytes(dataSourceFactory, uri, 0, HEADER_BYTES))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        if (header.limit() < HEADER_BYTES || !hasMagic(header)) {
+            return null;
+        }
+        int count = header.getInt(12);
+        long separationMs = header.getInt(16) & 0xffffffffL;
+        if (separationMs == 0) {
+            separationMs = 1000; // spec default
+        }
+        if (count <= 0) {
+            return null;
+        }
+
+        ByteBuffer index = ByteBuffer.wrap(PlayerNetwork.readBytes(dataSourceFactory, uri,
+                HEADER_BYTES, (long) (count + 1) * INDEX_ENTRY_BYTES))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        long[] timestampsMs = new long[count];
+        long[] offsets = new long[count + 1];
+        for (int i = 0; i <= count; i++) {
+            long timestamp = index.getInt(i * INDEX_ENTRY_BYTES) & 0xffffffffL;
+            offsets[i] = index.getInt(i * INDEX_ENTRY_BYTES + 4) & 0xffffffffL;
+            if (i < count) {
+                timestampsMs[i] = timestamp * separationMs;
+            }
+        }
+        return new BifThumbnailSource(dataSourceFactory, uri, timestampsMs, offsets);
+    }
+
+    static boolean hasMagic(ByteBuffer buffer) {
+        if (buffer.limit() < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Bitmap getFrame(long positionMs, int width, int height) throws IOException {
+        int i = findIndex(positionMs);
+        long length = offsets[i + 1] - offsets[i];
+        if (length <= 0) {
+            return null;
+        }
+        byte[] jpeg = PlayerNetwork.readBytes(dataSourceFactory, uri, offsets[i], length);
+        return BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length);
+    }
+
+    /** Last image at or before the position. */
+    private int findIndex(long positionMs) {
+        int low = 0;
+        int high = timestampsMs.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (timestampsMs[mid] <= positionMs) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public void release() {
+        // Stateless between requests
+    }
+}
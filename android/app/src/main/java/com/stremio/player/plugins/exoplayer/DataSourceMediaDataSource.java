@@ -0,0 +1,84 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.media.MediaDataSource;
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import java.io.IOException;
+
+/**
+ * Lets MediaMetadataRetriever read through an ExoPlayer DataSource, so thumbnail extraction
+ * reuses the player's HTTP engine and headers instead of opening its own connections.
+ * Sequential reads stay on one open request; a jump reopens at the new offset.
+ */
+public class DataSourceMediaDataSource extends MediaDataSource {
+    private final DataSource dataSource;
+    private final Uri uri;
+    private boolean opened = false;
+    private long readPosition = -1;
+    private long size = -1;
+
+    public DataSourceMediaDataSource(DataSource dataSource, Uri uri) {
+        this.dataSource = dataSource;
+        this.uri = uri;
+    }
+
+    @Override
+    public synchronized int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        if (size == 0) {
+            return 0;
+        }
+        if (this.size >= 0 && position >= this.size) {
+            return -1;
+        }
+        if (!opened || position != readPosition) {
+            openAt(position);
+        }
+
+        int read = dataSource.read(buffer, offset, size);
+        if (read == C.RESULT_END_OF_INPUT) {
+            return -1;
+        }
+        readPosition += read;
+        return read;
+    }
+
+    @Override
+    public synchronized long getSize() throws IOException {
+        if (size < 0 && !opened) {
+            openAt(0);
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeQuietly();
+    }
+
+    private void openAt(long position) throws IOException {
+        closeQuietly();
+        DataSpec dataSpec = new DataSpec.Builder()
+            .setUri(uri)
+            .setPosition(position)
+            .build();
+        long length = dataSource.open(dataSpec);
+        opened = true;
+        readPosition = position;
+        if (size < 0 && length != C.LENGTH_UNSET) {
+            size = position + length;
+        }
+    }
+
+    private void closeQuietly() {
+        if (opened) {
+            opened = false;
+            try {
+                dataSource.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
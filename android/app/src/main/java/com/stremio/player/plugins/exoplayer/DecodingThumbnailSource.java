@@ -0,0 +1,50 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import com.google.android.exoplayer2.upstream.DataSource;
+
+/**
+ * Fallback thumbnail source that decodes keyframes from the stream with MediaMetadataRetriever.
+ * The retriever is not thread-safe, so every extractor worker owns its own instance.
+ */
+public class DecodingThumbnailSource implements ThumbnailSource {
+    private final DataSource.Factory dataSourceFactory;
+    private final Uri uri;
+    private MediaMetadataRetriever retriever;
+
+    public DecodingThumbnailSource(DataSource.Factory dataSourceFactory, Uri uri) {
+        this.dataSourceFactory = dataSourceFactory;
+        this.uri = uri;
+    }
+
+    @Override
+    public Bitmap getFrame(long positionMs, int width, int height) {
+        if (retriever == null) {
+            // Open the stream only once a frame is actually needed
+            retriever = new MediaMetadataRetriever();
+            retriever.setDataSource(new DataSourceMediaDataSource(dataSourceFactory.createDataSource(), uri));
+        }
+        long timeUs = positionMs * 1000L;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            // Let the decoder scale down instead of materialising a full-size frame
+            return retriever.getScaledFrameAtTime(timeUs,
+                MediaMetadataRetriever.OPTION_CLOSEST_SYNC, width, height);
+        }
+        return retriever.getFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+    }
+
+    @Override
+    public void release() {
+        if (retriever != null) {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            retriever = null;
+        }
+    }
+}
@@ -72,16 +72,26 @@ public class DoubleTapController {
 
     private void seekForward() {
         if (player != null) {
-            long currentPos = player.getCurrentPosition();
-            player.seekTo(currentPos + SEEK_AMOUNT);
+            boolean traced = PlayerTrace.begin("DoubleTapController.seekForward");
+            try {
+                long currentPos = player.getCurrentPosition();
+                player.seekTo(currentPos + SEEK_AMOUNT);
+            } finally {
+                PlayerTrace.end(traced);
+            }
             showSeekIndicator("⏩ +10s");
         }
     }
 
     private void seekBackward() {
         if (player != null) {
-            long currentPos = player.getCurrentPosition();
-            player.seekTo(Math.max(0, currentPos - SEEK_AMOUNT));
+            boolean traced = PlayerTrace.begin("DoubleTapController.seekBackward");
+            try {
+                long currentPos = player.getCurrentPosition();
+                player.seekTo(Math.max(0, currentPos - SEEK_AMOUNT));
+            } finally {
+                PlayerTrace.end(traced);
+            }
             showSeekIndicator("⏪ -10s");
         }
     }
@@ -1,6 +1,10 @@
 package com.stremio.player.plugins.exoplayer;
 
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.ActivityInfo;
+import android.os.IBinder;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -17,31 +21,24 @@ import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.PlaybackParameters;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.ui.AspectRatioFrameLayout;
+import com.google.android.exoplayer2.ui.DefaultTimeBar;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelectionParameters;
 import com.google.android.exoplayer2.ui.PlayerView;
+import com.google.android.exoplayer2.ui.TimeBar;
 import com.google.android.exoplayer2.ui.TrackSelectionDialogBuilder;
-import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
 import com.stremio.player.R;
-import org.json.JSONObject;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Collections;
 import android.view.WindowManager;
 import android.os.Build;
 import android.graphics.Color;
 import android.widget.ImageView;
-import android.graphics.Bitmap;
 import android.graphics.Rect;
-import android.media.MediaMetadataRetriever;
 import com.google.android.exoplayer2.MediaItem.SubtitleConfiguration;
 import com.google.android.exoplayer2.C;
-import com.google.android.exoplayer2.util.MimeTypes;
-import org.json.JSONArray;
 import java.util.ArrayList;
 import java.util.List;
-import android.net.Uri;
 import com.google.android.exoplayer2.Tracks;
 import android.app.AlertDialog;
 import com.google.android.exoplayer2.Format;
@@ -60,6 +57,7 @@ public class ExoPlayerActivity extends AppCompatActivity {
     private PlayerView playerView;
     private TextView titleView;
     private String videoUrl;
+    private String trickplayUrl;
     private String videoTitle;
     private Map<String, String> headers;
     private DefaultTrackSelector trackSelector;
@@ -118,9 +116,102 @@ public class ExoPlayerActivity extends AppCompatActivity {
     private static final int THUMBS_PER_ROW = 5;
     private static final int THUMB_WIDTH = 160;
     private static final int THUMB_HEIGHT = 90;
-    private Bitmap[] thumbnailCache;
+    private static final int THUMB_CACHE_BYTES = 4 * 1024 * 1024; // compressed thumbnails kept in memory
+    private static final int THUMB_NEAREST_RADIUS = 24; // furthest stand-in shown while a thumbnail decodes
+    private ThumbnailStore thumbnailStore;
+    private ThumbnailExtractor thumbnailExtractor;
+    private ThumbnailDiskCache thumbnailDiskCache;
+    private int previewIndex = -1;
+    private int shownIndex = -1;
     private List<SubtitleConfiguration> subtitleConfigurations;
-    private boolean isLoadingSubtitles = false;
+    private AdaptiveLoadControl.Config bufferConfig;
+    private SubtitleAddonFetcher subtitleFetcher;
+    private SubtitleAddonFetcher.Lookup subtitleLookup;
+    private String sessionId;
+    private String progressKey;
+    private boolean resume;
+    private List<PlayerQueue.Item> queueItems;
+    private PlaybackSession session;
+    private static final long NEXT_EPISODE_CHECK_INTERVAL = 1000;
+    private final Runnable nextEpisodeCheckRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // The queue can also be replaced from JS through ExoPlayerPlugin.setQueue()
+            isNextEpisodeAvailable = playbackService != null && playbackService.getQueue().hasNext();
+            updateNextEpisodeVisibility();
+            if (player != null && player.isPlaying()) {
+                controlsHandler.postDelayed(this, NEXT_EPISODE_CHECK_INTERVAL);
+            }
+        }
+    };
+    private PlaybackService playbackService;
+    private boolean isServiceBound = false;
+
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            playbackService = ((PlaybackService.LocalBinder) binder).getService();
+            if (!isFinishing() && !isDestroyed()) {
+                if (needsStreamRace()) {
+                    startStreamRace();
+                } else {
+                    initializePlayer();
+                }
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            playbackService = null;
+        }
+    };
+
+    private final Player.Listener playerListener = new Player.Listener() {
+        @Override
+        public void onTracksChanged(Tracks tracks) {
+            updateAvailableButtons();
+            
+            // If no subtitle tracks are available, ask the subtitle addons (once per addon)
+            boolean hasSubtitles = false;
+            for (Tracks.Group trackGroup : tracks.getGroups()) {
+                if (trackGroup.getType() == C.TRACK_TYPE_TEXT && trackGroup.length > 0) {
+                    hasSubtitles = true;
+                    break;
+                }
+            }
+            
+            if (!hasSubtitles) {
+                fetchAddonSubtitles();
+            }
+        }
+
+        @Override
+        public void onPlaybackStateChanged(int state) {
+            if (state == Player.STATE_READY) {
+                loadingOverlay.setVisibility(View.GONE);
+                updateAvailableButtons();
+                updateNextEpisodeVisibility();
+            } else if (state == Player.STATE_BUFFERING) {
+                loadingOverlay.setVisibility(View.VISIBLE);
+            }
+        }
+
+        @Override
+        public void onIsPlayingChanged(boolean isPlaying) {
+            updatePlayPauseButton(isPlaying);
+            controlsHandler.removeCallbacks(nextEpisodeCheckRunnable);
+            if (isPlaying) {
+                controlsHandler.post(nextEpisodeCheckRunnable);
+            }
+        }
+
+        @Override
+        public void onPositionDiscontinuity(Player.PositionInfo oldPosition,
+                                          Player.PositionInfo newPosition,
+                                          @Player.DiscontinuityReason int reason) {
+            updateNextEpisodeVisibility();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -152,17 +243,39 @@ public class ExoPlayerActivity extends AppCompatActivity {
         // Initialize handler for controls visibility
         controlsHandler = new Handler(Looper.getMainLooper());
 
-        // Get video details from intent
-        videoUrl = getIntent().getStringExtra("url");
-        videoTitle = getIntent().getStringExtra("title");
-        String headersJson = getIntent().getStringExtra("headers");
-        headers = parseHeaders(headersJson);
-        String subtitlesJson = getIntent().getStringExtra("subtitles");
-        subtitleConfigurations = parseSubtitles(subtitlesJson);
+        // Get video details from the session ExoPlayerPlugin.play() registered
+        sessionId = getIntent().getStringExtra(PlaybackSession.EXTRA_SESSION_ID);
+        session = PlaybackSession.get(sessionId);
+        subtitleFetcher = new SubtitleAddonFetcher();
+        if (session == null) {
+            // Recreated after process death; the web app has to start playback again
+            finish();
+            return;
+        }
+        videoUrl = session.url;
+        videoTitle = session.title;
+        trickplayUrl = session.trickplayUrl;
+        headers = session.headers;
+        subtitleConfigurations = session.subtitles;
+        bufferConfig = session.bufferConfig;
+        subtitleLookup = session.subtitleLookup;
+        progressKey = session.progressKey;
+        resume = session.resume;
+        queueItems = session.queue;
+        if (session.getSelectedCandidate() > 0) {
+            applyCandidate(session.getSelectedCandidate());
+        }
+
+        // Let the plugin's control methods reach this player
+        ExoPlayerPlugin plugin = ExoPlayerPlugin.getInstance();
+        if (plugin != null) {
+            plugin.setCurrentActivity(this);
+        }
 
-        // Fetch additional subtitles if needed
+        // Fetch additional subtitles if needed; results that arrive before the service
+        // connects go straight into the first MediaItem
         if (subtitleConfigurations == null || subtitleConfigurations.isEmpty()) {
-            fetchOpenSubtitles();
+            fetchAddonSubtitles();
         }
 
         // Initialize views
@@ -185,11 +298,16 @@ public class ExoPlayerActivity extends AppCompatActivity {
         // Set up button click listeners
         setupButtonListeners();
 
-        // Initialize player
-        initializePlayer();
+        // Initialize loading overlay
+        loadingOverlay = findViewById(R.id.loading_overlay);
+        
+        // Show loading initially
+        loadingOverlay.setVisibility(View.VISIBLE);
 
-        // Initialize double tap controller after player is created
-        doubleTapController = new DoubleTapController(this, player, findViewById(android.R.id.content));
+        // Start and bind the playback service; the player is attached once it connects
+        Intent serviceIntent = new Intent(this, PlaybackService.class);
+        startService(serviceIntent);
+        isServiceBound = bindService(serviceIntent, serviceConnection, Context.BIND_AUTO_CREATE);
 
         // Set up back button
         ImageButton backButton = findViewById(R.id.back_button);
@@ -228,12 +346,6 @@ public class ExoPlayerActivity extends AppCompatActivity {
             finish();
         });
 
-        // Initialize loading overlay
-        loadingOverlay = findViewById(R.id.loading_overlay);
-        
-        // Show loading initially
-        loadingOverlay.setVisibility(View.VISIBLE);
-
         // Initialize aspect ratio button
         ImageButton aspectButton = findViewById(R.id.exo_aspect);
         aspectButton.setOnClickListener(v -> cycleAspectRatio());
@@ -252,33 +364,19 @@ public class ExoPlayerActivity extends AppCompatActivity {
         nextEpisodeButton = findViewById(R.id.next_episode);
         qualityButton = findViewById(R.id.exo_quality);
 
+        // Show thumbnails above the time bar while scrubbing
+        setupScrubPreview();
+
         // Set up quality button
         qualityButton.setOnClickListener(v -> showQualitySelector());
 
         // Set up next episode button
         nextEpisodeButton.setOnClickListener(v -> playNextEpisode());
 
-        // Add player listener for next episode
-        player.addListener(new Player.Listener() {
-            @Override
-            public void onPositionDiscontinuity(Player.PositionInfo oldPosition,
-                                              Player.PositionInfo newPosition,
-                                              @Player.DiscontinuityReason int reason) {
-                updateNextEpisodeVisibility();
-            }
-
-            @Override
-            public void onPlaybackStateChanged(int state) {
-                if (state == Player.STATE_READY) {
-                    updateNextEpisodeVisibility();
-                }
-            }
-        });
-
         // Set up preview frame touch listener
         playerView.setOnTouchListener((v, event) -> {
             // First try to handle double tap
-            if (doubleTapController.onTouchEvent(event)) {
+            if (doubleTapController != null && doubleTapController.onTouchEvent(event)) {
                 return true;
             }
             
@@ -681,83 +779,85 @@ public class ExoPlayerActivity extends AppCompatActivity {
     }
 
     private void initializePlayer() {
-        // Create track selector with parameters
-        DefaultTrackSelector.Parameters parameters = new DefaultTrackSelector.Parameters.Builder(this)
-            .setPreferredTextLanguage("en")
-            .setSelectUndeterminedTextLanguage(true)
-            .setPreferredAudioLanguage(null) // Don't set a default audio language
-            .build();
-            
-        trackSelector = new DefaultTrackSelector(this);
-        trackSelector.setParameters(parameters);
-
-        // Create player instance
-        player = new ExoPlayer.Builder(this)
-            .setTrackSelector(trackSelector)
-            .build();
+        boolean traced = PlayerTrace.begin("ExoPlayerActivity.initializePlayer");
+        try {
+            attachPlayer();
+        } finally {
+            PlayerTrace.end(traced);
+        }
+    }
 
-        // Add listener for track selection changes
-        player.addListener(new Player.Listener() {
-            @Override
-            public void onTracksChanged(Tracks tracks) {
-                updateAvailableButtons();
-                
-                // If no subtitle tracks are available, try fetching from OpenSubtitles
-                boolean hasSubtitles = false;
-                for (Tracks.Group trackGroup : tracks.getGroups()) {
-                    if (trackGroup.getType() == C.TRACK_TYPE_TEXT && trackGroup.length > 0) {
-                        hasSubtitles = true;
-                        break;
-                    }
-                }
-                
-                if (!hasSubtitles && !isLoadingSubtitles) {
-                    fetchOpenSubtitles();
-                }
+    private void attachPlayer() {
+        // Addon subtitles that already answered go into the first MediaItem, so the swap in
+        // addSubtitles() is only needed for the slower ones. A matching preloaded player is
+        // adopted as it is instead and picks them up in that single swap.
+        if (subtitleLookup != null
+                && !PlayerPreloader.isPreloaded(videoUrl, headers, subtitleConfigurations, bufferConfig)) {
+            List<SubtitleConfiguration> found = subtitleFetcher.getFound(subtitleLookup);
+            if (!found.isEmpty()) {
+                subtitleConfigurations = mergeSubtitles(subtitleConfigurations, found);
             }
-        });
+        }
+        // The service hands back the running player when the activity is recreated,
+        // or adopts one that ExoPlayerPlugin.preload() already started buffering
+        player = playbackService.attach(videoUrl, videoTitle, headers, subtitleConfigurations, bufferConfig,
+            progressKey, resume, queueItems, getFallbackCandidates());
+        trackSelector = playbackService.getTrackSelector();
+        player.addListener(playerListener);
+
+        // Recreated mid-queue: the service is already further along than our session
+        PlayerQueue queue = playbackService.getQueue();
+        if (queue.getCurrentItem() != null) {
+            applyQueueItem(queue.getCurrentItem());
+        }
+        isNextEpisodeAvailable = queue.hasNext();
+        playbackService.setQueueListener(this::onQueueItemChanged);
+        playbackService.setFailoverListener(this::onStreamFailover);
+        if (player.isPlaying()) {
+            controlsHandler.post(nextEpisodeCheckRunnable);
+        }
 
         // Set player view
         playerView.setPlayer(player);
         playerView.setControllerShowTimeoutMs(CONTROLS_HIDE_TIMEOUT);
 
-        // Create media item with subtitles
-        MediaItem.Builder mediaItemBuilder = new MediaItem.Builder()
-            .setUri(videoUrl);
+        player.setPlayWhenReady(true);
 
-        // Add subtitle configurations
-        if (subtitleConfigurations != null && !subtitleConfigurations.isEmpty()) {
-            mediaItemBuilder.setSubtitleConfigurations(subtitleConfigurations);
-        }
+        // Initialize double tap controller after player is created
+        doubleTapController = new DoubleTapController(this, player, findViewById(android.R.id.content));
 
-        // Create data source factory with headers
-        DefaultHttpDataSource.Factory dataSourceFactory = new DefaultHttpDataSource.Factory();
-        if (headers != null && !headers.isEmpty()) {
-            dataSourceFactory.setDefaultRequestProperties(headers);
+        // An attached player may already be ready, in which case no state change will follow
+        if (player.getPlaybackState() == Player.STATE_READY) {
+            loadingOverlay.setVisibility(View.GONE);
+            updateAvailableButtons();
+            updateNextEpisodeVisibility();
         }
+    }
 
-        // Prepare player
-        player.setMediaItem(mediaItemBuilder.build());
-        player.prepare();
-        player.setPlayWhenReady(true);
-
-        // Add player listeners
-        player.addListener(new Player.Listener() {
-            @Override
-            public void onPlaybackStateChanged(int state) {
-                if (state == Player.STATE_READY) {
-                    loadingOverlay.setVisibility(View.GONE);
-                    updateAvailableButtons();
-                } else if (state == Player.STATE_BUFFERING) {
-                    loadingOverlay.setVisibility(View.VISIBLE);
-                }
-            }
-
-            @Override
-            public void onIsPlayingChanged(boolean isPlaying) {
-                updatePlayPauseButton(isPlaying);
+    private void releasePlayer() {
+        releaseThumbnails();
+        if (player != null) {
+            player.removeListener(playerListener);
+            playerView.setPlayer(null);
+            player = null;
+        }
+        // Keep playing through recreation; tear down only when the user leaves the player
+        if (isFinishing()) {
+            if (playbackService != null) {
+                playbackService.stopPlayback();
+            } else {
+                stopService(new Intent(this, PlaybackService.class));
             }
-        });
+        }
+        if (playbackService != null) {
+            playbackService.setQueueListener(null);
+            playbackService.setFailoverListener(null);
+        }
+        if (isServiceBound) {
+            unbindService(serviceConnection);
+            isServiceBound = false;
+        }
+        playbackService = null;
     }
 
     private void updateAvailableButtons() {
@@ -790,53 +890,6 @@ public class ExoPlayerActivity extends AppCompatActivity {
         }
     }
 
-    private Map<String, String> parseHeaders(String headersJson) {
-        Map<String, String> headerMap = new HashMap<>();
-        try {
-            if (headersJson != null && !headersJson.isEmpty()) {
-                JSONObject json = new JSONObject(headersJson);
-                Iterator<String> keys = json.keys();
-                while (keys.hasNext()) {
-                    String key = keys.next();
-                    headerMap.put(key, json.getString(key));
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return headerMap;
-    }
-
-    private List<SubtitleConfiguration> parseSubtitles(String subtitlesJson) {
-        List<SubtitleConfiguration> configs = new ArrayList<>();
-        if (subtitlesJson == null || subtitlesJson.isEmpty()) {
-            return configs;
-        }
-
-        try {
-            JSONObject jsonObject = new JSONObject(subtitlesJson);
-            JSONArray subtitles = jsonObject.getJSONArray("subtitles");
-            
-            for (int i = 0; i < subtitles.length(); i++) {
-                JSONObject subtitle = subtitles.getJSONObject(i);
-                String url = subtitle.getString("url");
-                String language = subtitle.getString("language");
-                
-                SubtitleConfiguration config = new SubtitleConfiguration.Builder(Uri.parse(url))
-                    .setMimeType(MimeTypes.TEXT_VTT) // VTT format
-                    .setLanguage(language)
-                    .setSelectionFlags(C.SELECTION_FLAG_DEFAULT)
-                    .build();
-                
-                configs.add(config);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        
-        return configs;
-    }
-
     public void setPlaybackSpeed(float speed) {
         if (player != null) {
             PlaybackParameters params = new PlaybackParameters(speed);
@@ -867,6 +920,7 @@ public class ExoPlayerActivity extends AppCompatActivity {
             bottomControls.setAlpha(0f);
             
             // Animate fade in
+            PlayerTrace.beginAsync(PlayerTrace.CONTROLS_SHOW, 0);
             topControls.animate()
                 .alpha(1f)
                 .setDuration(200)
@@ -883,6 +937,7 @@ public class ExoPlayerActivity extends AppCompatActivity {
                 .alpha(1f)
                 .setDuration(200)
                 .withLayer()
+                .withEndAction(() -> PlayerTrace.endAsync(PlayerTrace.CONTROLS_SHOW, 0))
                 .start();
 
             // Auto-hide controls after timeout
@@ -899,6 +954,7 @@ public class ExoPlayerActivity extends AppCompatActivity {
             isControlsVisible = false;
             
             // Animate fade out
+            PlayerTrace.beginAsync(PlayerTrace.CONTROLS_HIDE, 0);
             topControls.animate()
                 .alpha(0f)
                 .setDuration(200)
@@ -924,6 +980,7 @@ public class ExoPlayerActivity extends AppCompatActivity {
                 .setDuration(200)
                 .withLayer()
                 .withEndAction(() -> {
+                    PlayerTrace.endAsync(PlayerTrace.CONTROLS_HIDE, 0);
                     if (!isControlsVisible) {
                         bottomControls.setVisibility(View.GONE);
                     }
@@ -954,6 +1011,9 @@ public class ExoPlayerActivity extends AppCompatActivity {
         super.onPause();
         if (player != null) {
             player.pause();
+            if (playbackService != null) {
+                playbackService.saveProgress();
+            }
             // Remove keep screen on flag when paused
             getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         }
@@ -970,11 +1030,17 @@ public class ExoPlayerActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (player != null) {
-            player.release();
-            player = null;
+        ExoPlayerPlugin plugin = ExoPlayerPlugin.getInstance();
+        if (plugin != null) {
+            plugin.clearCurrentActivity(this);
+        }
+        subtitleFetcher.cancel();
+        if (isFinishing()) {
+            PlaybackSession.remove(sessionId);
         }
+        releasePlayer();
         controlsHandler.removeCallbacks(hideControlsRunnable);
+        controlsHandler.removeCallbacks(nextEpisodeCheckRunnable);
         // Remove any pending animations
         if (speedIndicator != null) {
             speedIndicator.clearAnimation();
@@ -982,6 +1048,15 @@ public class ExoPlayerActivity extends AppCompatActivity {
         previewHandler.removeCallbacksAndMessages(null);
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (thumbnailStore != null) {
+            thumbnailStore.onTrimMemory(level);
+            shownIndex = -1;
+        }
+    }
+
     @Override
     public void onBackPressed() {
         // Hide controls first
@@ -1243,13 +1318,20 @@ public class ExoPlayerActivity extends AppCompatActivity {
         }
     }
 
-    private void updatePreviewForPosition(float x) {
+    private void updatePreviewForPosition(View timeBar, long position) {
         if (player == null || !isPreviewEnabled) return;
 
-        float width = playerView.getWidth();
-        float progress = x / width;
         long duration = player.getDuration();
-        long position = (long) (duration * progress);
+        if (duration == C.TIME_UNSET || duration <= 0) return;
+
+        // Centre the preview over the scrub position on the time bar
+        int[] barLocation = new int[2];
+        int[] rootLocation = new int[2];
+        timeBar.getLocationOnScreen(barLocation);
+        ((View) previewFrame.getParent()).getLocationOnScreen(rootLocation);
+        float progress = Math.max(0f, Math.min(1f, (float) position / duration));
+        float x = barLocation[0] - rootLocation[0] + timeBar.getWidth() * progress;
+        float width = ((View) previewFrame.getParent()).getWidth();
 
         // Update preview position
         previewFrame.setX(Math.max(0, Math.min(x - previewFrame.getWidth() / 2,
@@ -1269,10 +1351,31 @@ public class ExoPlayerActivity extends AppCompatActivity {
                        .start();
         }
 
-        // Load preview image (implement based on your thumbnail generation system)
         loadPreviewImage(position);
     }
 
+    private void setupScrubPreview() {
+        DefaultTimeBar timeBar = playerView.findViewById(R.id.exo_progress);
+        if (timeBar == null) return;
+
+        timeBar.addListener(new TimeBar.OnScrubListener() {
+            @Override
+            public void onScrubStart(TimeBar bar, long position) {
+                updatePreviewForPosition(timeBar, position);
+            }
+
+            @Override
+            public void onScrubMove(TimeBar bar, long position) {
+                updatePreviewForPosition(timeBar, position);
+            }
+
+            @Override
+            public void onScrubStop(TimeBar bar, long position, boolean canceled) {
+                hidePreview();
+            }
+        });
+    }
+
     private void hidePreview() {
         if (previewFrame.getVisibility() == View.VISIBLE) {
             previewFrame.animate()
@@ -1310,12 +1413,81 @@ public class ExoPlayerActivity extends AppCompatActivity {
         }
     }
 
-    private void playNextEpisode() {
-        // Implement next episode logic based on your content system
-        // This is just a placeholder
-        if (isNextEpisodeAvailable) {
-            // Load and play next episode
+    private boolean needsStreamRace() {
+        // Not when the service already plays this session or a preloaded player is waiting
+        return session.candidates.size() > 1
+            && session.getSelectedCandidate() < 0
+            && playbackService.getPlayer() == null
+            && !PlayerPreloader.isPreloaded(videoUrl, headers, subtitleConfigurations, bufferConfig);
+    }
+
+    private void startStreamRace() {
+        StreamRace.race(session.candidates, winner -> {
+            session.setSelectedCandidate(winner);
+            applyCandidate(winner);
+            if (playbackService != null && !isFinishing() && !isDestroyed()) {
+                initializePlayer();
+            }
+        });
+    }
+
+    /** StreamFailover swapped the host under us; previews and subtitles must come from the new one. */
+    private void onStreamFailover(StreamCandidate candidate) {
+        int index = session.candidates.indexOf(candidate);
+        if (index >= 0) {
+            // A recreated activity restarts on the candidate that took over, not the dead host
+            session.setSelectedCandidate(index);
+        }
+        videoUrl = candidate.url;
+        headers = candidate.headers;
+        releaseThumbnails();
+    }
+
+    private void applyCandidate(int index) {
+        StreamCandidate candidate = session.candidates.get(index);
+        videoUrl = candidate.url;
+        headers = candidate.headers;
+    }
+
+    /** Candidates to fail over to, in order, skipping the one we start on. */
+    private List<StreamCandidate> getFallbackCandidates() {
+        List<StreamCandidate> fallbacks = new ArrayList<>();
+        int selected = Math.max(0, session.getSelectedCandidate());
+        for (int i = 0; i < session.candidates.size(); i++) {
+            if (i != selected) {
+                fallbacks.add(session.candidates.get(i));
+            }
         }
+        return fallbacks;
+    }
+
+    private void playNextEpisode() {
+        if (!isNextEpisodeAvailable || playbackService == null) return;
+
+        // Keep where this episode stopped before the player moves on
+        playbackService.saveProgress();
+        playbackService.getQueue().skipToNext();
+    }
+
+    private void onQueueItemChanged(PlayerQueue.Item item) {
+        applyQueueItem(item);
+        isNextEpisodeAvailable = playbackService != null && playbackService.getQueue().hasNext();
+        updateNextEpisodeVisibility();
+        updateAvailableButtons();
+    }
+
+    private void applyQueueItem(PlayerQueue.Item item) {
+        videoUrl = item.url;
+        videoTitle = item.title;
+        titleView.setText(videoTitle);
+        headers = item.headers;
+        subtitleConfigurations = item.subtitles;
+        subtitleLookup = item.subtitleLookup;
+        progressKey = item.progressKey;
+        // Trickplay sources belong to the first stream; the new one gets decoded previews
+        trickplayUrl = null;
+        releaseThumbnails();
+        previewIndex = -1;
     }
 
     private String formatDuration(long millis) {
@@ -1332,76 +1504,76 @@ public class ExoPlayerActivity extends AppCompatActivity {
     private void loadPreviewImage(long position) {
         if (player == null) return;
 
-        // For now use placeholder while generating real thumbnails
-        previewImage.setImageResource(R.drawable.preview_placeholder);
+        if (thumbnailExtractor == null && !startThumbnailExtractor()) {
+            previewImage.setImageResource(R.drawable.preview_placeholder);
+            return;
+        }
 
-        // Start generating thumbnails if not already done
-        if (thumbnailCache == null) {
-            generateThumbnails();
-        } else {
-            // Use cached thumbnail if available
-            int thumbIndex = (int) (position / THUMB_INTERVAL_MS);
-            if (thumbIndex >= 0 && thumbIndex < thumbnailCache.length && thumbnailCache[thumbIndex] != null) {
-                previewImage.setImageBitmap(thumbnailCache[thumbIndex]);
+        // Show the exact thumbnail if we have it, otherwise the nearest one already extracted
+        int thumbIndex = thumbnailExtractor.indexFor(position);
+        thumbnailStore.setFocus(thumbIndex);
+        if (!thumbnailStore.contains(thumbIndex) && thumbnailDiskCache != null
+                && thumbnailDiskCache.contains(thumbIndex)) {
+            // Scrubbed this title before: the tile is one mapped read away
+            byte[] jpeg = thumbnailDiskCache.read(thumbIndex);
+            if (jpeg != null) {
+                thumbnailStore.put(thumbIndex, jpeg);
             }
         }
-    }
+        int nearest = thumbnailStore.findNearest(thumbIndex, THUMB_NEAREST_RADIUS);
+        if (nearest != shownIndex) {
+            if (nearest >= 0) {
+                previewImage.setImageBitmap(thumbnailStore.decode(nearest));
+            } else {
+                previewImage.setImageResource(R.drawable.preview_placeholder);
+            }
+            shownIndex = nearest;
+        }
+        previewIndex = thumbIndex;
 
-    private void generateThumbnails() {
-        if (player == null) return;
+        // Re-prioritise extraction around where the finger is now
+        thumbnailExtractor.requestAround(position);
+    }
 
+    private boolean startThumbnailExtractor() {
         long duration = player.getDuration();
-        int numThumbnails = (int) (duration / THUMB_INTERVAL_MS) + 1;
-        thumbnailCache = new Bitmap[numThumbnails];
-
-        // Start a background thread to generate thumbnails
-        new Thread(() -> {
-            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-            try {
-                // Set data source with headers
-                if (headers != null && !headers.isEmpty()) {
-                    retriever.setDataSource(videoUrl, new HashMap<>(headers));
-                } else {
-                    retriever.setDataSource(videoUrl);
-                }
+        if (duration == C.TIME_UNSET || duration <= 0) return false;
 
-                // Generate thumbnails at regular intervals
-                for (int i = 0; i < numThumbnails; i++) {
-                    long timeUs = i * THUMB_INTERVAL_MS * 1000L; // Convert to microseconds
-                    
-                    // Extract frame
-                    Bitmap frame = retriever.getFrameAtTime(timeUs,
-                            MediaMetadataRetriever.OPTION_CLOSEST);
-                    
-                    if (frame != null) {
-                        // Scale the bitmap to the desired thumbnail size
-                        thumbnailCache[i] = Bitmap.createScaledBitmap(
-                            frame,
-                            THUMB_WIDTH,
-                            THUMB_HEIGHT,
-                            true
-                        );
-                        frame.recycle(); // Recycle the original frame
-                    }
-
-                    // Update preview if it's currently showing this position
-                    final int index = i;
-                    runOnUiThread(() -> {
-                        if (player != null && Math.abs(player.getCurrentPosition() - (index * THUMB_INTERVAL_MS)) < THUMB_INTERVAL_MS) {
-                            previewImage.setImageBitmap(thumbnailCache[index]);
-                        }
-                    });
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                try {
-                    retriever.release();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+        thumbnailStore = new ThumbnailStore(THUMB_CACHE_BYTES, index -> {
+            // Let an evicted thumbnail be extracted again if the user scrubs back to it
+            if (thumbnailExtractor != null) {
+                thumbnailExtractor.forget(index);
             }
-        }).start();
+        });
+        int thumbCount = (int) (duration / THUMB_INTERVAL_MS) + 1;
+        thumbnailDiskCache = ThumbnailDiskCache.open(this, videoUrl, duration,
+            THUMB_INTERVAL_MS, THUMB_WIDTH, THUMB_HEIGHT, thumbCount);
+        thumbnailExtractor = new ThumbnailExtractor(this, videoUrl, trickplayUrl, headers, duration,
+            THUMB_INTERVAL_MS, THUMB_WIDTH, THUMB_HEIGHT, thumbnailDiskCache, (index, jpeg) -> {
+                if (thumbnailStore == null) return;
+                thumbnailStore.put(index, jpeg);
+                // Update preview if it's currently showing this position
+                if (index == previewIndex && previewFrame.getVisibility() == View.VISIBLE
+                        && thumbnailStore.contains(index)) {
+                    previewImage.setImageBitmap(thumbnailStore.decode(index));
+                    shownIndex = index;
+                }
+            });
+        return true;
+    }
+
+    private void releaseThumbnails() {
+        if (thumbnailExtractor != null) {
+            // The extractor closes the disk cache once its workers have stopped
+            thumbnailExtractor.release();
+            thumbnailExtractor = null;
+            thumbnailDiskCache = null;
+        }
+        if (thumbnailStore != null) {
+            thumbnailStore.clear();
+            thumbnailStore = null;
+        }
+        shownIndex = -1;
     }
 
     private void updatePlayPauseButton(boolean isPlaying) {
@@ -1428,28 +1600,60 @@ public class ExoPlayerActivity extends AppCompatActivity {
         }
     }
 
-    private void fetchOpenSubtitles() {
-        if (isLoadingSubtitles || videoTitle == null) return;
-        
-        isLoadingSubtitles = true;
-        
-        // Create a background thread to fetch subtitles
-        new Thread(() -> {
-            try {
-                // TODO: Implement subtitle fetching using standard HTTP client
-                // For example:
-                // 1. Create an HTTP client (e.g., OkHttp)
-                // 2. Make a request to your subtitle service
-                // 3. Parse the response and create SubtitleConfiguration objects
-                // 4. Update the player with new subtitles
-                
-                // For now, just reset the loading flag
-                isLoadingSubtitles = false;
-                
-            } catch (Exception e) {
-                e.printStackTrace();
-                isLoadingSubtitles = false;
+    private void fetchAddonSubtitles() {
+        if (subtitleLookup == null) return;
+        SubtitleAddonFetcher.Lookup lookup = subtitleLookup;
+        subtitleFetcher.fetch(lookup, found -> {
+            // The queue may have moved on to another title while the addons answered
+            if (lookup.equals(subtitleLookup)) {
+                addSubtitles(found);
+            }
+        });
+    }
+
+    /** {@code base} plus the entries of {@code found} whose URI it doesn't have yet. */
+    private static List<SubtitleConfiguration> mergeSubtitles(List<SubtitleConfiguration> base,
+                                                              List<SubtitleConfiguration> found) {
+        List<SubtitleConfiguration> merged = base != null ? new ArrayList<>(base) : new ArrayList<>();
+        for (SubtitleConfiguration candidate : found) {
+            boolean duplicate = false;
+            for (SubtitleConfiguration existing : merged) {
+                if (existing.uri.equals(candidate.uri)) {
+                    duplicate = true;
+                    break;
+                }
             }
-        }).start();
+            if (!duplicate) {
+                merged.add(candidate);
+            }
+        }
+        return merged;
+    }
+
+    private void addSubtitles(List<SubtitleConfiguration> found) {
+        MediaItem current = player != null ? player.getCurrentMediaItem() : null;
+        List<SubtitleConfiguration> known = current != null && current.localConfiguration != null
+            ? current.localConfiguration.subtitleConfigurations
+            : subtitleConfigurations;
+        if (known == null) {
+            known = new ArrayList<>();
+        }
+
+        List<SubtitleConfiguration> merged = mergeSubtitles(known, found);
+        if (merged.size() == known.size()) return;
+
+        subtitleConfigurations = merged;
+        SubtitlePipeline.prefetch(this, videoUrl, headers, merged.subList(known.size(), merged.size()));
+        if (current == null) return;
+
+        // ExoPlayer 2.19 cannot add sideloaded tracks to a prepared source, so swap the item in
+        // place; the position is kept and the media already read comes back from the disk cache.
+        // The fetcher reports each lookup's results together, so this happens at most once per
+        // title. Queued episodes after it stay in the playlist.
+        int index = player.getCurrentMediaItemIndex();
+        long position = player.getCurrentPosition();
+        player.addMediaItem(index + 1, current.buildUpon().setSubtitleConfigurations(merged).build());
+        player.seekTo(index + 1, position);
+        player.removeMediaItem(index);
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package com.stremio.player.plugins.exoplayer;
 
 import android.content.Intent;
+import android.net.Uri;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
@@ -9,81 +10,151 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.Bridge;
 import org.json.JSONObject;
 import com.getcapacitor.JSArray;
+import com.google.android.exoplayer2.MediaItem.SubtitleConfiguration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @CapacitorPlugin(name = "ExoPlayer")
 public class ExoPlayerPlugin extends Plugin {
     private ExoPlayerActivity currentActivity;
     private static ExoPlayerPlugin instance;
+    private static final long DEFAULT_PROBE_DEADLINE_MS = 4000;
+    private static final int MIN_PROBE_BYTES = 16 * 1024;
+    private static final int MAX_PROBE_BYTES = 2 * 1024 * 1024;
 
     @Override
     public void load() {
         super.load();
         instance = this;
+        // Replay the progress journal now, not on the main thread when the first title starts
+        WatchProgressJournal.warmUp(getContext());
     }
 
     @PluginMethod
     public void play(PluginCall call) {
         String url = call.getString("url");
         String title = call.getString("title", "");
-        JSObject headers = call.getObject("headers", new JSObject());
-        
-        // Handle subtitles array
-        JSArray subtitlesArray = call.getArray("subtitles", new JSArray());
-        JSObject subtitlesObject = new JSObject();
-        subtitlesObject.put("subtitles", subtitlesArray);
+        Map<String, String> headers = PlayerFactory.parseHeaders(call.getObject("headers"));
+        // Ordered alternatives for the same title; url, when given, is the preferred one
+        List<StreamCandidate> candidates = StreamCandidate.fromJson(call.getArray("candidates"), headers);
+        if (url != null) {
+            candidates.add(0, new StreamCandidate(url, headers));
+            // url may also be in candidates; keep it once, first
+            candidates = StreamCandidate.distinct(candidates);
+        } else if (!candidates.isEmpty()) {
+            url = candidates.get(0).url;
+            headers = candidates.get(0).headers;
+        } else {
+            call.reject("URL is required");
+            return;
+        }
+        Long positionInterval = call.getLong("positionIntervalMs");
+        if (positionInterval != null) {
+            PlayerEventEmitter.setPositionIntervalMs(positionInterval);
+        }
+
+        // Parse here on the plugin thread; the activity picks the typed session up by id
+        PlaybackSession session = new PlaybackSession(
+            url,
+            title,
+            headers,
+            PlayerFactory.parseSubtitles(call.getArray("subtitles")),
+            AdaptiveLoadControl.Config.fromJson(call.getObject("buffer")),
+            SubtitleAddonFetcher.Lookup.fromJson(call.getObject("subtitleLookup")),
+            call.getString("trickplayUrl"),
+            // Without an explicit key, the stream URL minus volatile tokens identifies the title
+            call.getString("progressKey", PlayerCache.buildCacheKey(Uri.parse(url))),
+            call.getBoolean("resume", false),
+            PlayerQueue.Item.fromJson(call.getArray("queue")),
+            candidates);
 
         Intent intent = new Intent(getContext(), ExoPlayerActivity.class);
-        intent.putExtra("url", url);
-        intent.putExtra("title", title);
-        intent.putExtra("headers", headers.toString());
-        intent.putExtra("subtitles", subtitlesObject.toString());
-        
+        intent.putExtra(PlaybackSession.EXTRA_SESSION_ID, PlaybackSession.register(session));
         getActivity().startActivity(intent);
         call.resolve();
     }
 
     @PluginMethod
-    public void pause(PluginCall call) {
-        if (currentActivity != null && currentActivity.getPlayer() != null) {
-            currentActivity.getPlayer().pause();
+    public void preload(PluginCall call) {
+        String url = call.getString("url");
+        if (url == null) {
+            call.reject("URL is required");
+            return;
         }
+        Map<String, String> headerMap = PlayerFactory.parseHeaders(call.getObject("headers"));
+        List<SubtitleConfiguration> subtitleConfigurations = PlayerFactory.parseSubtitles(call.getArray("subtitles"));
+        AdaptiveLoadControl.Config bufferConfig = AdaptiveLoadControl.Config.fromJson(call.getObject("buffer"));
+
+        // Players are bound to the main looper, like the one ExoPlayerActivity would create
+        getActivity().runOnUiThread(() ->
+            PlayerPreloader.preload(getContext(), url, headerMap, subtitleConfigurations, bufferConfig));
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void cancelPreload(PluginCall call) {
+        getActivity().runOnUiThread(PlayerPreloader::clear);
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void pause(PluginCall call) {
+        PlayerCommandQueue.post(player -> player.pause());
         call.resolve();
     }
 
     @PluginMethod
     public void stop(PluginCall call) {
-        if (currentActivity != null && currentActivity.getPlayer() != null) {
-            currentActivity.getPlayer().stop();
-            currentActivity.finish();
-        }
+        PlayerCommandQueue.post(player -> {
+            player.stop();
+            if (currentActivity != null) {
+                currentActivity.finish();
+            }
+        });
         call.resolve();
     }
 
     @PluginMethod
     public void setPlaybackSpeed(PluginCall call) {
-        if (currentActivity != null && currentActivity.getPlayer() != null) {
-            Double speedDouble = call.getDouble("speed", 1.0);
-            float speed = speedDouble != null ? speedDouble.floatValue() : 1.0f;
-            currentActivity.getPlayer().setPlaybackSpeed(speed);
-        }
+        Double speedDouble = call.getDouble("speed", 1.0);
+        float speed = speedDouble != null ? speedDouble.floatValue() : 1.0f;
+        PlayerCommandQueue.post(player -> player.setPlaybackSpeed(speed));
         call.resolve();
     }
 
     @PluginMethod
     public void seekTo(PluginCall call) {
-        if (currentActivity != null && currentActivity.getPlayer() != null) {
-            Long positionLong = call.getLong("position", 0L);
-            long position = positionLong != null ? positionLong : 0L;
-            currentActivity.getPlayer().seekTo(position);
-        }
+        Long positionLong = call.getLong("position", 0L);
+        long position = positionLong != null ? positionLong : 0L;
+        PlayerCommandQueue.post(player -> player.seekTo(position));
         call.resolve();
     }
 
+    @PluginMethod
+    public void execute(PluginCall call) {
+        JSArray commands = call.getArray("commands", new JSArray());
+        PlayerBatch batch;
+        try {
+            batch = PlayerBatch.parse(commands);
+        } catch (IllegalArgumentException e) {
+            // Nothing is applied unless the whole batch is valid
+            call.reject(e.getMessage());
+            return;
+        }
+        PlayerCommandQueue.post(
+            player -> call.resolve(batch.apply(player)),
+            () -> call.reject("Player not initialized"));
+    }
+
+    // Getters read the published snapshot; they never touch the player off its looper
+
     @PluginMethod
     public void getDuration(PluginCall call) {
-        if (currentActivity != null && currentActivity.getPlayer() != null) {
+        PlayerSnapshot snapshot = PlayerSnapshot.get();
+        if (snapshot != null) {
             JSObject ret = new JSObject();
-            ret.put("duration", currentActivity.getPlayer().getDuration());
+            ret.put("duration", snapshot.durationMs);
             call.resolve(ret);
         } else {
             call.reject("Player not initialized");
@@ -92,9 +163,10 @@ public class ExoPlayerPlugin extends Plugin {
 
     @PluginMethod
     public void getCurrentPosition(PluginCall call) {
-        if (currentActivity != null && currentActivity.getPlayer() != null) {
+        PlayerSnapshot snapshot = PlayerSnapshot.get();
+        if (snapshot != null) {
             JSObject ret = new JSObject();
-            ret.put("position", currentActivity.getPlayer().getCurrentPosition());
+            ret.put("position", snapshot.estimatePositionMs());
             call.resolve(ret);
         } else {
             call.reject("Player not initialized");
@@ -103,19 +175,200 @@ public class ExoPlayerPlugin extends Plugin {
 
     @PluginMethod
     public void isPlaying(PluginCall call) {
-        if (currentActivity != null && currentActivity.getPlayer() != null) {
+        PlayerSnapshot snapshot = PlayerSnapshot.get();
+        if (snapshot != null) {
             JSObject ret = new JSObject();
-            ret.put("playing", currentActivity.getPlayer().isPlaying());
+            ret.put("playing", snapshot.playing);
             call.resolve(ret);
         } else {
             call.reject("Player not initialized");
         }
     }
 
+    @PluginMethod
+    public void getState(PluginCall call) {
+        PlayerSnapshot snapshot = PlayerSnapshot.get();
+        if (snapshot != null) {
+            call.resolve(snapshot.toJson());
+        } else {
+            call.reject("Player not initialized");
+        }
+    }
+
+    @PluginMethod
+    public void getStats(PluginCall call) {
+        // The collector is confined to the main thread, like the player it listens to
+        getActivity().runOnUiThread(() -> call.resolve(PlaybackStatsCollector.getStats()));
+    }
+
+    @PluginMethod
+    public void setQueue(PluginCall call) {
+        List<PlayerQueue.Item> items = PlayerQueue.Item.fromJson(call.getArray("items"));
+        getActivity().runOnUiThread(() -> PlayerQueue.setActiveItems(items));
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void probeStreams(PluginCall call) {
+        Map<String, String> headers = PlayerFactory.parseHeaders(call.getObject("headers"));
+        List<StreamCandidate> candidates = StreamCandidate.fromJson(call.getArray("urls"), headers);
+        if (candidates.isEmpty()) {
+            call.reject("urls is required");
+            return;
+        }
+        long deadlineMs = Math.max(500, call.getLong("deadlineMs", DEFAULT_PROBE_DEADLINE_MS));
+        int probeBytes = Math.min(MAX_PROBE_BYTES,
+            Math.max(MIN_PROBE_BYTES, call.getInt("probeBytes", StreamProber.DEFAULT_PROBE_BYTES)));
+
+        // Probes run on StreamProber's shared pool; the call resolves when they report back
+        StreamProber.probeAll(candidates, probeBytes, deadlineMs, probeResults -> {
+            JSArray results = new JSArray();
+            for (StreamProber.Result result : probeResults) {
+                JSObject item = new JSObject();
+                item.put("url", result.url);
+                item.put("ok", result.ok);
+                item.put("status", result.statusCode);
+                item.put("ttfbMs", result.ttfbMs);
+                item.put("bytesRead", result.bytesRead);
+                item.put("throughputBps", result.throughputBps);
+                item.put("contentType", result.contentType);
+                item.put("container", result.container);
+                item.put("contentLength", result.contentLength);
+                item.put("rangeSupported", result.rangeSupported);
+                item.put("error", result.error);
+                results.put(item);
+            }
+            JSObject ret = new JSObject();
+            ret.put("results", results);
+            call.resolve(ret);
+        });
+    }
+
+    @PluginMethod
+    public void getProgress(PluginCall call) {
+        WatchProgressJournal journal = WatchProgressJournal.get(getContext());
+        if (journal == null) {
+            call.reject("Progress store unavailable");
+            return;
+        }
+        List<String> keys = null;
+        JSArray keysArray = call.getArray("keys");
+        if (keysArray != null) {
+            try {
+                keys = keysArray.toList();
+            } catch (Exception e) {
+                call.reject("keys must be an array of strings");
+                return;
+            }
+        }
+        JSArray entries = new JSArray();
+        for (WatchProgressJournal.Entry entry : journal.query(keys)) {
+            JSObject item = new JSObject();
+            item.put("key", entry.key);
+            item.put("position", entry.positionMs);
+            item.put("duration", entry.durationMs);
+            item.put("updatedAt", entry.updatedAtMs);
+            entries.put(item);
+        }
+        JSObject ret = new JSObject();
+        ret.put("entries", entries);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void getHostScores(PluginCall call) {
+        List<String> origins = null;
+        JSArray urlsArray = call.getArray("urls");
+        if (urlsArray != null) {
+            try {
+                origins = new ArrayList<>();
+                for (Object url : urlsArray.toList()) {
+                    String origin = HostScoreboard.originOf((String) url);
+                    if (origin != null && !origins.contains(origin)) {
+                        origins.add(origin);
+                    }
+                }
+            } catch (Exception e) {
+                call.reject("urls must be an array of strings");
+                return;
+            }
+        }
+        long now = System.currentTimeMillis();
+        JSArray scores = new JSArray();
+        for (HostScoreboard.Score score : HostScoreboard.get(getContext()).query(origins)) {
+            JSObject item = new JSObject();
+            item.put("host", score.host);
+            item.put("throughputBps", score.throughputBps);
+            item.put("startupMs", score.startupMs);
+            item.put("failureRate", score.failureRate);
+            item.put("samples", score.samples);
+            item.put("confidence", score.getConfidence(now));
+            item.put("updatedAt", score.updatedAtMs);
+            scores.put(item);
+        }
+        JSObject ret = new JSObject();
+        ret.put("scores", scores);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void getCacheUsage(PluginCall call) {
+        JSObject ret = new JSObject();
+        ret.put("usedBytes", PlayerCache.getUsedBytes(getContext()));
+        ret.put("maxBytes", PlayerCache.getMaxBytes(getContext()));
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void clearCache(PluginCall call) {
+        PlayerCache.clear(getContext());
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void setCacheSize(PluginCall call) {
+        Long maxBytes = call.getLong("maxBytes");
+        if (maxBytes == null || maxBytes <= 0) {
+            call.reject("maxBytes is required");
+            return;
+        }
+        PlayerCache.setMaxBytes(getContext(), maxBytes);
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void setEventOptions(PluginCall call) {
+        Long positionInterval = call.getLong("positionIntervalMs");
+        if (positionInterval != null) {
+            PlayerEventEmitter.setPositionIntervalMs(positionInterval);
+        }
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void setTracing(PluginCall call) {
+        PlayerTrace.setEnabled(call.getBoolean("enabled", false));
+        call.resolve();
+    }
+
     public void setCurrentActivity(ExoPlayerActivity activity) {
         this.currentActivity = activity;
     }
 
+    /** Called by the activity on destroy; a newer activity may already have registered itself. */
+    public void clearCurrentActivity(ExoPlayerActivity activity) {
+        if (this.currentActivity == activity) {
+            this.currentActivity = null;
+        }
+    }
+
+    /** Forwards a PlayerEventEmitter event to JS; nothing crosses the bridge without a listener. */
+    public void emit(String eventName, JSObject data) {
+        if (hasListeners(eventName)) {
+            notifyListeners(eventName, data);
+        }
+    }
+
     public static ExoPlayerPlugin getInstance() {
         return instance;
     }
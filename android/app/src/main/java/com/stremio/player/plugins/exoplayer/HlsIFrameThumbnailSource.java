@@ -0,0 +1,132 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.graphics.Bitmap;
+import android.media.MediaDataSource;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMultivariantPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.util.UriUtil;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Trickplay from an HLS {@code EXT-X-I-FRAME-STREAM-INF} variant. Each entry of the I-frame
+ * playlist is a byte range holding a single keyframe, so a thumbnail costs one small range
+ * request and one frame decode instead of seeking through the full-bitrate stream.
+ */
+public class HlsIFrameThumbnailSource implements ThumbnailSource {
+    private final DataSource.Factory dataSourceFactory;
+    private final HlsMediaPlaylist playlist;
+    private final List<HlsMediaPlaylist.Segment> segments;
+
+    private HlsIFrameThumbnailSource(DataSource.Factory dataSourceFactory, HlsMediaPlaylist playlist) {
+        this.dataSourceFactory = dataSourceFactory;
+        this.playlist = playlist;
+        this.segments = playlist.segments;
+    }
+
+    /** Returns a source for the lowest-bitrate I-frame variant of a multivariant playlist, or null. */
+    public static HlsIFrameThumbnailSource open(DataSource.Factory dataSourceFactory, Uri uri) throws IOException {
+        HlsPlaylist playlist = parse(dataSourceFactory, uri);
+        if (!(playlist instanceof HlsMultivariantPlaylist)) {
+            return null;
+        }
+        HlsMultivariantPlaylist.Variant iFrameVariant = null;
+        for (HlsMultivariantPlaylist.Variant variant : ((HlsMultivariantPlaylist) playlist).variants) {
+            if ((variant.format.roleFlags & C.ROLE_FLAG_TRICK_PLAY) != 0
+                    && (iFrameVariant == null || variant.format.bitrate < iFrameVariant.format.bitrate)) {
+                iFrameVariant = variant;
+            }
+        }
+        if (iFrameVariant == null) {
+            return null;
+        }
+        HlsPlaylist iFramePlaylist = parse(dataSourceFactory, iFrameVariant.url);
+        if (!(iFramePlaylist instanceof HlsMediaPlaylist) || ((HlsMediaPlaylist) iFramePlaylist).segments.isEmpty()) {
+            return null;
+        }
+        return new HlsIFrameThumbnailSource(dataSourceFactory, (HlsMediaPlaylist) iFramePlaylist);
+    }
+
+    private static HlsPlaylist parse(DataSource.Factory dataSourceFactory, Uri uri) throws IOException {
+        byte[] bytes = PlayerNetwork.readBytes(dataSourceFactory, uri);
+        return new HlsPlaylistParser().parse(uri, new ByteArrayInputStream(bytes));
+    }
+
+    @Override
+    public Bitmap getFrame(long positionMs, int width, int height) throws IOException {
+        HlsMediaPlaylist.Segment segment = findSegment(positionMs * 1000L);
+        byte[] init = segment.initializationSegment != null ? readSegment(segment.initializationSegment) : new byte[0];
+        byte[] frame = readSegment(segment);
+        byte[] data = new byte[init.length + frame.length];
+        System.arraycopy(init, 0, data, 0, init.length);
+        System.arraycopy(frame, 0, data, init.length, frame.length);
+
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(new ByteArrayMediaDataSource(data));
+            // The range holds one keyframe; ask for whatever frame the container starts with
+            return retriever.getFrameAtTime(-1, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private HlsMediaPlaylist.Segment findSegment(long positionUs) {
+        HlsMediaPlaylist.Segment best = segments.get(0);
+        for (HlsMediaPlaylist.Segment segment : segments) {
+            if (segment.relativeStartTimeUs > positionUs) {
+                break;
+            }
+            best = segment;
+        }
+        return best;
+    }
+
+    private byte[] readSegment(HlsMediaPlaylist.Segment segment) throws IOException {
+        Uri uri = UriUtil.resolveToUri(playlist.baseUri, segment.url);
+        return PlayerNetwork.readBytes(dataSourceFactory, uri, segment.byteRangeOffset, segment.byteRangeLength);
+    }
+
+    @Override
+    public void release() {
+        // Stateless between requests
+    }
+
+    private static final class ByteArrayMediaDataSource extends MediaDataSource {
+        private final byte[] data;
+
+        ByteArrayMediaDataSource(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int readAt(long position, byte[] buffer, int offset, int size) {
+            if (position >= data.length) {
+                return -1;
+            }
+            int count = (int) Math.min(size, data.length - position);
+            System.arraycopy(data, (int) position, buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public long getSize() {
+            return data.length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.Context;
+import android.os.SystemClock;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+
+/**
+ * Feeds {@link HostScoreboard} from the attached player: start-up time when a host reaches
+ * READY, a failure when it breaks with a load or parse error, and the mean bandwidth estimate
+ * while it was being read, committed when playback moves to another host or the player goes.
+ * Items the queue pre-buffered start from memory, so they contribute no start-up sample.
+ * Lives in PlaybackService. Main thread only.
+ */
+public class HostScoreTracker implements AnalyticsListener {
+    private final HostScoreboard scoreboard;
+    private ExoPlayer player;
+    private String origin;
+    private long hostStartMs;
+    private boolean started;
+    private long bandwidthSampleSum;
+    private int bandwidthSampleCount;
+
+    public HostScoreTracker(Context context) {
+        scoreboard = HostScoreboard.get(context);
+    }
+
+    public void setPlayer(ExoPlayer newPlayer, String url) {
+        if (player != null) {
+            player.removeAnalyticsListener(this);
+        }
+        startHost(null, false);
+        player = newPlayer;
+        if (player != null) {
+            player.addAnalyticsListener(this);
+            // A preloaded player may be ready already; its start-up time was never seen
+            startHost(HostScoreboard.originOf(url), player.getPlaybackState() != Player.STATE_READY);
+        }
+    }
+
+    @Override
+    public void onMediaItemTransition(EventTime eventTime, MediaItem mediaItem, int reason) {
+        if (mediaItem == null || mediaItem.localConfiguration == null) {
+            return;
+        }
+        String newOrigin = HostScoreboard.originOf(mediaItem.localConfiguration.uri.toString());
+        if (newOrigin != null && !newOrigin.equals(origin)) {
+            // A playlist change here is StreamFailover swapping hosts, which starts cold
+            startHost(newOrigin, reason == Player.MEDIA_ITEM_TRANSITION_REASON_PLAYLIST_CHANGED);
+        }
+    }
+
+    @Override
+    public void onPlaybackStateChanged(EventTime eventTime, int state) {
+        if (state == Player.STATE_READY && !started && origin != null) {
+            started = true;
+            scoreboard.recordStart(origin, SystemClock.elapsedRealtime() - hostStartMs);
+        }
+    }
+
+    @Override
+    public void onBandwidthEstimate(EventTime eventTime, int totalLoadTimeMs, long totalBytesLoaded,
+                                    long bitrateEstimate) {
+        bandwidthSampleSum += bitrateEstimate;
+        bandwidthSampleCount++;
+    }
+
+    @Override
+    public void onPlayerError(EventTime eventTime, PlaybackException error) {
+        int category = error.errorCode / 1000;
+        boolean hostError = category == PlaybackException.ERROR_CODE_IO_UNSPECIFIED / 1000
+            || category == PlaybackException.ERROR_CODE_PARSING_CONTAINER_MALFORMED / 1000;
+        if (hostError && origin != null) {
+            scoreboard.recordFailure(origin);
+            // Don't also credit the host with a start if playback recovers on it
+            started = true;
+        }
+    }
+
+    private void startHost(String newOrigin, boolean measureStartup) {
+        if (origin != null && bandwidthSampleCount > 0) {
+            scoreboard.recordThroughput(origin, bandwidthSampleSum / bandwidthSampleCount);
+        }
+        origin = newOrigin;
+        hostStartMs = SystemClock.elapsedRealtime();
+        started = !measureStartup;
+        bandwidthSampleSum = 0;
+        bandwidthSampleCount = 0;
+    }
+}
@@ -0,0 +1,260 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * How well each stream origin has served this device, learned from real playback: moving
+ * averages of throughput, start-up time and failure rate. Samples are blended in with a weight
+ * that grows with the age of the previous value, so a host that was bad last week is judged
+ * mostly on today's session. Kept in a small JSON file written in batches off the caller's
+ * thread. Fed by {@link HostScoreTracker}; read by ExoPlayerPlugin.getHostScores().
+ */
+public final class HostScoreboard {
+    private static final String FILE_NAME = "exoplayer-hosts.json";
+    private static final int MAX_HOSTS = 200;
+    private static final double ALPHA = 0.3;
+    private static final long HALF_LIFE_MS = 3L * 24 * 60 * 60 * 1000;
+    private static final long SAVE_DELAY_MS = 5000;
+
+    private static HostScoreboard instance;
+
+    /** Averages for one origin; immutable, replaced on every update. */
+    public static final class Score {
+        public final String host;
+        public final long throughputBps; // -1 until a throughput sample arrives
+        public final long startupMs;     // -1 until the host has started playback once
+        public final double failureRate;
+        public final int samples;
+        public final long updatedAtMs;
+
+        Score(String host, long throughputBps, long startupMs, double failureRate, int samples, long updatedAtMs) {
+            this.host = host;
+            this.throughputBps = throughputBps;
+            this.startupMs = startupMs;
+            this.failureRate = failureRate;
+            this.samples = samples;
+            this.updatedAtMs = updatedAtMs;
+        }
+
+        /** 0..1: how much the averages still say, fading with age and low sample counts. */
+        public double getConfidence(long nowMs) {
+            return freshness(nowMs - updatedAtMs) * Math.min(1.0, samples / 3.0);
+        }
+    }
+
+    private final File file;
+    private final Map<String, Score> scores = new HashMap<>();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "HostScoreboard");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private boolean saveScheduled = false;
+
+    private HostScoreboard(File file) {
+        this.file = file;
+        load();
+    }
+
+    public static synchronized HostScoreboard get(Context context) {
+        if (instance == null) {
+            instance = new HostScoreboard(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    /** Origin of a stream URL ({@code scheme://host[:port]}), or null if it has none. */
+    public static String originOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        Uri uri = Uri.parse(url);
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (scheme == null || host == null || !scheme.startsWith("http")) {
+            return null;
+        }
+        scheme = scheme.toLowerCase();
+        String origin = scheme + "://" + host.toLowerCase();
+        int port = uri.getPort();
+        // Same shape as URL.origin in the web app, which leaves out default ports
+        boolean defaultPort = port == -1 || (port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"));
+        return defaultPort ? origin : origin + ":" + port;
+    }
+
+    /** Scores for the given origins, or for every known one when origins is null; best first. */
+    public synchronized List<Score> query(List<String> origins) {
+        List<Score> result = new ArrayList<>();
+        if (origins == null) {
+            result.addAll(scores.values());
+        } else {
+            for (String origin : origins) {
+                Score score = scores.get(origin);
+                if (score != null) {
+                    result.add(score);
+                }
+            }
+        }
+        Collections.sort(result, (a, b) -> {
+            if (a.failureRate != b.failureRate) {
+                return Double.compare(a.failureRate, b.failureRate);
+            }
+            return Long.compare(b.throughputBps, a.throughputBps);
+        });
+        return result;
+    }
+
+    /** The host delivered its first frame after {@code startupMs}. */
+    public synchronized void recordStart(String origin, long startupMs) {
+        Score previous = scores.get(origin);
+        long now = System.currentTimeMillis();
+        double alpha = alpha(previous, now);
+        put(new Score(origin,
+            previous != null ? previous.throughputBps : -1,
+            previous != null && previous.startupMs >= 0 ? blend(previous.startupMs, startupMs, alpha) : startupMs,
+            previous != null ? previous.failureRate * (1 - alpha) : 0,
+            previous != null ? previous.samples + 1 : 1,
+            now));
+    }
+
+    /** The host failed to load or broke off mid-playback. */
+    public synchronized void recordFailure(String origin) {
+        Score previous = scores.get(origin);
+        long now = System.currentTimeMillis();
+        double alpha = alpha(previous, now);
+        put(new Score(origin,
+            previous != null ? previous.throughputBps : -1,
+            previous != null ? previous.startupMs : -1,
+            previous != null ? previous.failureRate * (1 - alpha) + alpha : 1,
+            previous != null ? previous.samples + 1 : 1,
+            now));
+    }
+
+    /** Mean bandwidth the player measured while reading from the host. */
+    public synchronized void recordThroughput(String origin, long throughputBps) {
+        if (throughputBps <= 0) {
+            return;
+        }
+        Score previous = scores.get(origin);
+        long now = System.currentTimeMillis();
+        double alpha = alpha(previous, now);
+        put(new Score(origin,
+            previous != null && previous.throughputBps > 0 ? blend(previous.throughputBps, throughputBps, alpha) : throughputBps,
+            previous != null ? previous.startupMs : -1,
+            previous != null ? previous.failureRate : 0,
+            previous != null ? previous.samples : 0,
+            now));
+    }
+
+    private void put(Score score) {
+        scores.put(score.host, score);
+        if (scores.size() > MAX_HOSTS) {
+            Score oldest = null;
+            for (Score candidate : scores.values()) {
+                if (oldest == null || candidate.updatedAtMs < oldest.updatedAtMs) {
+                    oldest = candidate;
+                }
+            }
+            scores.remove(oldest.host);
+        }
+        if (!saveScheduled) {
+            saveScheduled = true;
+            writer.schedule(this::save, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static double alpha(Score previous, long nowMs) {
+        if (previous == null) {
+            return 1;
+        }
+        // A stale average keeps only its fresh share of the usual (1 - ALPHA) weight
+        return 1 - (1 - ALPHA) * freshness(nowMs - previous.updatedAtMs);
+    }
+
+    private static double freshness(long ageMs) {
+        return Math.pow(0.5, Math.max(0, ageMs) / (double) HALF_LIFE_MS);
+    }
+
+    private static long blend(long previous, long sample, double alpha) {
+        return Math.round(previous * (1 - alpha) + sample * alpha);
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStream input = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = input.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+            JSONArray array = new JSONArray(new String(bytes, 0, offset, StandardCharsets.UTF_8));
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject object = array.getJSONObject(i);
+                Score score = new Score(
+                    object.getString("host"),
+                    object.optLong("throughputBps", -1),
+                    object.optLong("startupMs", -1),
+                    object.optDouble("failureRate", 0),
+                    object.optInt("samples", 0),
+                    object.optLong("updatedAt", 0));
+                scores.put(score.host, score);
+            }
+        } catch (Exception e) {
+            // Unreadable file: start over rather than keep failing on every launch
+            e.printStackTrace();
+            scores.clear();
+        }
+    }
+
+    private void save() {
+        JSONArray array = new JSONArray();
+        synchronized (this) {
+            saveScheduled = false;
+            try {
+                for (Score score : scores.values()) {
+                    JSONObject object = new JSONObject();
+                    object.put("host", score.host);
+                    object.put("throughputBps", score.throughputBps);
+                    object.put("startupMs", score.startupMs);
+                    object.put("failureRate", score.failureRate);
+                    object.put("samples", score.samples);
+                    object.put("updatedAt", score.updatedAtMs);
+                    array.put(object);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            output.write(array.toString().getBytes(StandardCharsets.UTF_8));
+            output.getFD().sync();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+}
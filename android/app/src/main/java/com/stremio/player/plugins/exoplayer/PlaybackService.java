@@ -0,0 +1,299 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.graphics.Bitmap;
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.support.v4.media.session.MediaSessionCompat;
+import androidx.core.app.ServiceCompat;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem.SubtitleConfiguration;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.ext.mediasession.MediaSessionConnector;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.ui.PlayerNotificationManager;
+import com.stremio.player.R;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bound foreground service that owns the ExoPlayer instance. ExoPlayerActivity attaches to it
+ * for the surface and controls and detaches on destroy, so recreating the activity keeps the
+ * decoder, buffer and network connection alive. The player is released only when the activity
+ * finishes for good or a different stream is attached.
+ */
+public class PlaybackService extends Service {
+    private static final String TAG = "PlaybackService";
+    private static final String CHANNEL_ID = "playback";
+    private static final int NOTIFICATION_ID = 1001;
+
+    private final IBinder binder = new LocalBinder();
+    private ExoPlayer player;
+    private DefaultTrackSelector trackSelector;
+    private StreamHeaders streamHeaders;
+    private String currentUrl;
+    private String attachedUrl; // the stream the player was attached with, before the queue moved on
+    private String currentTitle;
+    private MediaSessionCompat mediaSession;
+    private MediaSessionConnector mediaSessionConnector;
+    private PlayerNotificationManager notificationManager;
+    private boolean isForeground = false;
+    private final PlayerEventEmitter eventEmitter = new PlayerEventEmitter();
+    private final PlayerSnapshotPublisher snapshotPublisher = new PlayerSnapshotPublisher();
+    private WatchProgressRecorder progressRecorder;
+    private PlayerQueue queue;
+    private PlayerQueue.Listener queueListener;
+    private StreamFailover.Listener failoverListener;
+    private StreamFailover failover;
+    private HostScoreTracker hostScoreTracker;
+
+    public class LocalBinder extends Binder {
+        public PlaybackService getService() {
+            return PlaybackService.this;
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        progressRecorder = new WatchProgressRecorder(this);
+        hostScoreTracker = new HostScoreTracker(this);
+        failover = new StreamFailover(candidate -> {
+            currentUrl = candidate.url;
+            notificationManager.invalidate();
+            if (failoverListener != null) {
+                failoverListener.onFailover(candidate);
+            }
+        });
+        queue = new PlayerQueue(this, item -> {
+            // Fallback streams belong to the title the player was attached with
+            failover.clearFallbacks();
+            currentUrl = item.url;
+            currentTitle = item.title;
+            progressRecorder.setKey(item.progressKey);
+            notificationManager.invalidate();
+            if (queueListener != null) {
+                queueListener.onItemChanged(item);
+            }
+        });
+        mediaSession = new MediaSessionCompat(this, TAG);
+        mediaSession.setActive(true);
+        mediaSessionConnector = new MediaSessionConnector(mediaSession);
+
+        notificationManager = new PlayerNotificationManager.Builder(this, NOTIFICATION_ID, CHANNEL_ID)
+            .setChannelNameResourceId(R.string.playback_channel_name)
+            .setMediaDescriptionAdapter(new DescriptionAdapter())
+            .setNotificationListener(new NotificationListener())
+            .build();
+        notificationManager.setMediaSessionToken(mediaSession.getSessionToken());
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        return START_NOT_STICKY;
+    }
+
+    /**
+     * Returns the player for {@code url}. The running player is reused untouched when it already
+     * plays that stream; otherwise it is replaced by a preloaded or freshly prepared one.
+     * Progress is recorded under {@code progressKey}, and a new player starts from the stored
+     * position when {@code resume} is set. {@code queueItems} follow the stream, see PlayerQueue;
+     * {@code fallbacks} replace it if its host fails, see StreamFailover.
+     */
+    public ExoPlayer attach(String url, String title, Map<String, String> headers,
+                            List<SubtitleConfiguration> subtitleConfigurations,
+                            AdaptiveLoadControl.Config bufferConfig, String progressKey, boolean resume,
+                            List<PlayerQueue.Item> queueItems, List<StreamCandidate> fallbacks) {
+        currentTitle = title;
+        if (player != null && url != null && (url.equals(currentUrl) || url.equals(attachedUrl))) {
+            notificationManager.invalidate();
+            return player;
+        }
+        releasePlayer();
+
+        PlayerPreloader.PreloadedPlayer preloaded = PlayerPreloader.take(url, headers, subtitleConfigurations, bufferConfig);
+        if (preloaded != null) {
+            trackSelector = preloaded.trackSelector;
+            streamHeaders = preloaded.streamHeaders;
+            player = preloaded.player;
+            PlaybackStatsCollector.startSession(player, url);
+        } else {
+            boolean traced = PlayerTrace.begin("PlaybackService.createPlayer");
+            try {
+                trackSelector = PlayerFactory.createTrackSelector(this);
+                streamHeaders = new StreamHeaders();
+                streamHeaders.put(url, headers);
+                player = PlayerFactory.createPlayer(this, trackSelector, streamHeaders, bufferConfig);
+            } finally {
+                PlayerTrace.end(traced);
+            }
+            PlaybackStatsCollector.startSession(player, url);
+            SubtitlePipeline.prefetch(this, url, headers, subtitleConfigurations);
+            traced = PlayerTrace.begin("PlaybackService.prepare");
+            try {
+                player.setMediaItem(PlayerFactory.buildMediaItem(url, subtitleConfigurations));
+                player.prepare();
+            } finally {
+                PlayerTrace.end(traced);
+            }
+        }
+        currentUrl = url;
+        attachedUrl = url;
+        if (resume) {
+            long resumePosition = WatchProgressRecorder.getResumePosition(this, progressKey);
+            if (resumePosition != C.TIME_UNSET) {
+                player.seekTo(resumePosition);
+            }
+        }
+
+        mediaSessionConnector.setPlayer(player);
+        notificationManager.setPlayer(player);
+        eventEmitter.setPlayer(player);
+        snapshotPublisher.setPlayer(player);
+        PlayerCommandQueue.setPlayer(player);
+        progressRecorder.setPlayer(player, progressKey);
+        queue.setPlayer(player, streamHeaders, queueItems);
+        failover.setPlayer(player, streamHeaders, fallbacks);
+        hostScoreTracker.setPlayer(player, url);
+        return player;
+    }
+
+    public ExoPlayer getPlayer() {
+        return player;
+    }
+
+    public PlayerQueue getQueue() {
+        return queue;
+    }
+
+    /** Told when the queue moves to its next item; the activity uses it to refresh its UI. */
+    public void setQueueListener(PlayerQueue.Listener listener) {
+        queueListener = listener;
+    }
+
+    /** Told when a fallback stream takes over; the activity follows it to the new host. */
+    public void setFailoverListener(StreamFailover.Listener listener) {
+        failoverListener = listener;
+    }
+
+    /** Stores the current position right away, e.g. when the player UI goes to the background. */
+    public void saveProgress() {
+        progressRecorder.save();
+    }
+
+    public DefaultTrackSelector getTrackSelector() {
+        return trackSelector;
+    }
+
+    /** Called when the user leaves the player for good; releases everything and stops the service. */
+    public void stopPlayback() {
+        releasePlayer();
+        stopForegroundCompat();
+        stopSelf();
+    }
+
+    @Override
+    public void onTaskRemoved(Intent rootIntent) {
+        stopPlayback();
+        super.onTaskRemoved(rootIntent);
+    }
+
+    @Override
+    public void onDestroy() {
+        releasePlayer();
+        notificationManager.setPlayer(null);
+        mediaSession.setActive(false);
+        mediaSession.release();
+        super.onDestroy();
+    }
+
+    private void releasePlayer() {
+        if (player != null) {
+            mediaSessionConnector.setPlayer(null);
+            notificationManager.setPlayer(null);
+            eventEmitter.setPlayer(null);
+            snapshotPublisher.setPlayer(null);
+            PlayerCommandQueue.setPlayer(null);
+            progressRecorder.setPlayer(null, null);
+            queue.setPlayer(null, null, null);
+            failover.setPlayer(null, null, null);
+            hostScoreTracker.setPlayer(null, null);
+            PlaybackStatsCollector.endSession();
+            player.release();
+            player = null;
+            trackSelector = null;
+            // The next player starts without any of this one's credentials
+            streamHeaders.clear();
+            streamHeaders = null;
+            currentUrl = null;
+            attachedUrl = null;
+        }
+    }
+
+    private void stopForegroundCompat() {
+        if (isForeground) {
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            isForeground = false;
+        }
+    }
+
+    private class DescriptionAdapter implements PlayerNotificationManager.MediaDescriptionAdapter {
+        @Override
+        public CharSequence getCurrentContentTitle(Player player) {
+            return currentTitle != null ? currentTitle : "";
+        }
+
+        @Override
+        public PendingIntent createCurrentContentIntent(Player player) {
+            // Bring the existing task forward; the player activity is on top of it while alive
+            Intent intent = getPackageManager().getLaunchIntentForPackage(getPackageName());
+            if (intent == null) {
+                return null;
+            }
+            return PendingIntent.getActivity(PlaybackService.this, 0, intent,
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+        }
+
+        @Override
+        public CharSequence getCurrentContentText(Player player) {
+            return null;
+        }
+
+        @Override
+        public Bitmap getCurrentLargeIcon(Player player, PlayerNotificationManager.BitmapCallback callback) {
+            return null;
+        }
+    }
+
+    private class NotificationListener implements PlayerNotificationManager.NotificationListener {
+        @Override
+        public void onNotificationPosted(int notificationId, Notification notification, boolean ongoing) {
+            if (ongoing && !isForeground) {
+                int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                    ? ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PLAYBACK : 0;
+                ServiceCompat.startForeground(PlaybackService.this, notificationId, notification, type);
+                isForeground = true;
+            } else if (!ongoing && isForeground) {
+                // Paused: keep the notification but let the system reclaim the service if needed
+                ServiceCompat.stopForeground(PlaybackService.this, ServiceCompat.STOP_FOREGROUND_DETACH);
+                isForeground = false;
+            }
+        }
+
+        @Override
+        public void onNotificationCancelled(int notificationId, boolean dismissedByUser) {
+            stopForegroundCompat();
+        }
+    }
+}
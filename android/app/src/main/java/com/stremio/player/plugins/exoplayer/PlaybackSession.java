@@ -0,0 +1,98 @@
+package com.stremio.player.plugins.exoplayer;
+
+import com.google.android.exoplayer2.MediaItem.SubtitleConfiguration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Everything ExoPlayerActivity needs to start playing, parsed once by ExoPlayerPlugin.play()
+ * on the plugin thread. Sessions live in an in-process registry and only the id travels in the
+ * Intent, which keeps large subtitle lists out of the Binder transaction and the JSON
+ * round trip out of onCreate(). The activity removes its session when it finishes for good.
+ */
+public final class PlaybackSession {
+    public static final String EXTRA_SESSION_ID = "sessionId";
+
+    // Normally one live session; a few more cover activities that never came up
+    private static final int MAX_SESSIONS = 4;
+    private static final AtomicInteger nextId = new AtomicInteger();
+    private static final Map<String, PlaybackSession> sessions = new LinkedHashMap<String, PlaybackSession>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PlaybackSession> eldest) {
+            return size() > MAX_SESSIONS;
+        }
+    };
+
+    public final String url;
+    public final String title;
+    public final Map<String, String> headers;
+    public final List<SubtitleConfiguration> subtitles;
+    public final AdaptiveLoadControl.Config bufferConfig;
+    public final SubtitleAddonFetcher.Lookup subtitleLookup;
+    public final String trickplayUrl;
+    /** Identifies the title in WatchProgressJournal. */
+    public final String progressKey;
+    public final boolean resume;
+    /** Episodes to play after this one. */
+    public final List<PlayerQueue.Item> queue;
+    /** Alternative streams for this title in preference order, {@code url} first; may be empty. */
+    public final List<StreamCandidate> candidates;
+    // Candidate picked by StreamRace; kept here so a recreated activity does not race again
+    private volatile int selectedCandidate = -1;
+
+    public PlaybackSession(String url, String title, Map<String, String> headers,
+                           List<SubtitleConfiguration> subtitles, AdaptiveLoadControl.Config bufferConfig,
+                           SubtitleAddonFetcher.Lookup subtitleLookup, String trickplayUrl,
+                           String progressKey, boolean resume, List<PlayerQueue.Item> queue,
+                           List<StreamCandidate> candidates) {
+        this.url = url;
+        this.title = title;
+        this.headers = headers;
+        this.subtitles = subtitles;
+        this.bufferConfig = bufferConfig;
+        this.subtitleLookup = subtitleLookup;
+        this.trickplayUrl = trickplayUrl;
+        this.progressKey = progressKey;
+        this.resume = resume;
+        this.queue = queue;
+        this.candidates = candidates;
+    }
+
+    public int getSelectedCandidate() {
+        return selectedCandidate;
+    }
+
+    public void setSelectedCandidate(int index) {
+        selectedCandidate = index;
+    }
+
+    /** Stores the session and returns the id to put in the Intent. */
+    public static String register(PlaybackSession session) {
+        String id = Integer.toString(nextId.incrementAndGet());
+        synchronized (sessions) {
+            sessions.put(id, session);
+        }
+        return id;
+    }
+
+    /** Returns the session, or null if the process was restarted since it was registered. */
+    public static PlaybackSession get(String id) {
+        if (id == null) {
+            return null;
+        }
+        synchronized (sessions) {
+            return sessions.get(id);
+        }
+    }
+
+    public static void remove(String id) {
+        if (id == null) {
+            return;
+        }
+        synchronized (sessions) {
+            sessions.remove(id);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.os.SystemClock;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.decoder.DecoderReuseEvaluation;
+
+/**
+ * Quality-of-experience counters for each playback session: time to first frame, rebuffers,
+ * bitrate switches, dropped frames, bandwidth estimates and decoder start-up. Callbacks only
+ * bump primitive fields; the last {@link #HISTORY_SIZE} sessions are kept in a ring buffer
+ * and turned into JSON only when ExoPlayerPlugin.getStats() asks. Main thread only.
+ */
+public class PlaybackStatsCollector implements AnalyticsListener {
+    private static final int HISTORY_SIZE = 10;
+
+    private static final JSObject[] history = new JSObject[HISTORY_SIZE];
+    private static int historyCount = 0;
+    private static int historyNext = 0;
+    private static PlaybackStatsCollector active;
+    private static int nextSessionId = 0;
+
+    private final ExoPlayer player;
+    private final int sessionId = nextSessionId++;
+    private final String url;
+    private final long startedAtMs;
+    private final long startedAtWallMs;
+    private long timeToFirstFrameMs = -1;
+    private boolean hasBeenReady = false;
+    private boolean seeking = false;
+    private long rebufferStartMs = -1;
+    private int rebufferCount = 0;
+    private long rebufferTotalMs = 0;
+    private int videoFormatSwitches = 0;
+    private int lastVideoBitrate = Format.NO_VALUE;
+    private int lastVideoHeight = Format.NO_VALUE;
+    private long droppedFrames = 0;
+    private long lastBandwidthEstimate = 0;
+    private long bandwidthSampleSum = 0;
+    private int bandwidthSampleCount = 0;
+    private String videoDecoder;
+    private long videoDecoderInitMs = -1;
+    private String audioDecoder;
+    private long audioDecoderInitMs = -1;
+    private int errorCount = 0;
+    private String lastError;
+
+    private PlaybackStatsCollector(ExoPlayer player, String url) {
+        this.player = player;
+        this.url = url;
+        this.startedAtMs = SystemClock.elapsedRealtime();
+        this.startedAtWallMs = System.currentTimeMillis();
+    }
+
+    /** Starts a session for a newly attached player, closing the previous one. */
+    public static void startSession(ExoPlayer player, String url) {
+        endSession();
+        active = new PlaybackStatsCollector(player, url);
+        player.addAnalyticsListener(active);
+        PlayerTrace.beginAsync(PlayerTrace.FIRST_FRAME, active.sessionId);
+    }
+
+    /** Moves the running session, if any, into the history ring. */
+    public static void endSession() {
+        if (active == null) {
+            return;
+        }
+        active.player.removeAnalyticsListener(active);
+        history[historyNext] = active.toJson(true);
+        historyNext = (historyNext + 1) % HISTORY_SIZE;
+        historyCount = Math.min(historyCount + 1, HISTORY_SIZE);
+        active = null;
+    }
+
+    /** Current session (or null) plus recent ones, newest first. */
+    public static JSObject getStats() {
+        JSObject result = new JSObject();
+        result.put("current", active != null ? active.toJson(false) : null);
+        JSArray sessions = new JSArray();
+        for (int i = 1; i <= historyCount; i++) {
+            sessions.put(history[(historyNext - i + HISTORY_SIZE) % HISTORY_SIZE]);
+        }
+        result.put("sessions", sessions);
+        return result;
+    }
+
+    @Override
+    public void onRenderedFirstFrame(EventTime eventTime, Object output, long renderTimeMs) {
+        if (timeToFirstFrameMs < 0) {
+            timeToFirstFrameMs = SystemClock.elapsedRealtime() - startedAtMs;
+            PlayerTrace.endAsync(PlayerTrace.FIRST_FRAME, sessionId);
+        }
+    }
+
+    @Override
+    public void onPlaybackStateChanged(EventTime eventTime, int state) {
+        long now = SystemClock.elapsedRealtime();
+        if (state == Player.STATE_READY) {
+            hasBeenReady = true;
+            if (seeking) {
+                seeking = false;
+                PlayerTrace.endAsync(PlayerTrace.SEEK, sessionId);
+            }
+            if (rebufferStartMs >= 0) {
+                rebufferTotalMs += now - rebufferStartMs;
+                rebufferStartMs = -1;
+                PlayerTrace.endAsync(PlayerTrace.REBUFFER, sessionId);
+            }
+        } else if (state == Player.STATE_BUFFERING && hasBeenReady && !seeking && rebufferStartMs < 0) {
+            // Start-up and seek buffering are expected; only a stall mid-playback counts
+            rebufferCount++;
+            rebufferStartMs = now;
+            PlayerTrace.counter("player.rebuffers", rebufferCount);
+            PlayerTrace.beginAsync(PlayerTrace.REBUFFER, sessionId);
+        }
+    }
+
+    @Override
+    public void onPositionDiscontinuity(EventTime eventTime, Player.PositionInfo oldPosition,
+                                        Player.PositionInfo newPosition, int reason) {
+        if (reason == Player.DISCONTINUITY_REASON_SEEK && !seeking) {
+            seeking = true;
+            PlayerTrace.beginAsync(PlayerTrace.SEEK, sessionId);
+        }
+    }
+
+    @Override
+    public void onVideoInputFormatChanged(EventTime eventTime, Format format,
+                                          DecoderReuseEvaluation decoderReuseEvaluation) {
+        if (lastVideoHeight != Format.NO_VALUE
+                && (format.bitrate != lastVideoBitrate || format.height != lastVideoHeight)) {
+            videoFormatSwitches++;
+        }
+        lastVideoBitrate = format.bitrate;
+        lastVideoHeight = format.height;
+    }
+
+    @Override
+    public void onDroppedVideoFrames(EventTime eventTime, int count, long elapsedMs) {
+        droppedFrames += count;
+        PlayerTrace.counter("player.droppedFrames", droppedFrames);
+    }
+
+    @Override
+    public void onBandwidthEstimate(EventTime eventTime, int totalLoadTimeMs, long totalBytesLoaded,
+                                    long bitrateEstimate) {
+        lastBandwidthEstimate = bitrateEstimate;
+        bandwidthSampleSum += bitrateEstimate;
+        bandwidthSampleCount++;
+        PlayerTrace.counter("player.bandwidthEstimate", bitrateEstimate);
+    }
+
+    @Override
+    public void onVideoDecoderInitialized(EventTime eventTime, String decoderName,
+                                          long initializedTimestampMs, long initializationDurationMs) {
+        videoDecoder = decoderName;
+        videoDecoderInitMs = initializationDurationMs;
+    }
+
+    @Override
+    public void onAudioDecoderInitialized(EventTime eventTime, String decoderName,
+                                          long initializedTimestampMs, long initializationDurationMs) {
+        audioDecoder = decoderName;
+        audioDecoderInitMs = initializationDurationMs;
+    }
+
+    @Override
+    public void onPlayerError(EventTime eventTime, PlaybackException error) {
+        errorCount++;
+        lastError = error.getErrorCodeName();
+    }
+
+    private JSObject toJson(boolean ended) {
+        long now = SystemClock.elapsedRealtime();
+        JSObject data = new JSObject();
+        data.put("url", url);
+        data.put("startedAt", startedAtWallMs);
+        data.put("durationMs", now - startedAtMs);
+        data.put("ended", ended);
+        data.put("timeToFirstFrameMs", timeToFirstFrameMs);
+        data.put("rebufferCount", rebufferCount);
+        data.put("rebufferMs", rebufferTotalMs + (rebufferStartMs >= 0 ? now - rebufferStartMs : 0));
+        data.put("videoFormatSwitches", videoFormatSwitches);
+        data.put("videoBitrate", lastVideoBitrate);
+        data.put("videoHeight", lastVideoHeight);
+        data.put("droppedFrames", droppedFrames);
+        data.put("bandwidthEstimate", lastBandwidthEstimate);
+        data.put("averageBandwidthEstimate", bandwidthSampleCount > 0 ? bandwidthSampleSum / bandwidthSampleCount : 0);
+        data.put("videoDecoder", videoDecoder);
+        data.put("videoDecoderInitMs", videoDecoderInitMs);
+        data.put("audioDecoder", audioDecoder);
+        data.put("audioDecoderInitMs", audioDecoderInitMs);
+        data.put("errorCount", errorCount);
+        data.put("lastError", lastError);
+        return data;
+    }
+}
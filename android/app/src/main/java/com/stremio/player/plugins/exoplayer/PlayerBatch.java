@@ -0,0 +1,110 @@
+package com.stremio.player.plugins.exoplayer;
+
+import com.getcapacitor.JSObject;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.trackselection.TrackSelectionParameters;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * An ordered list of player commands from {@code ExoPlayerPlugin.execute()}. The whole list is
+ * validated on the plugin thread, then applied in one main-thread task, so the web UI can
+ * e.g. resume with its preferences in a single bridge crossing. Track preferences are folded
+ * into one TrackSelectionParameters update to cost a single track selection.
+ */
+public final class PlayerBatch {
+    private final List<JSONObject> commands;
+
+    private PlayerBatch(List<JSONObject> commands) {
+        this.commands = commands;
+    }
+
+    /** Parses and validates every command; throws with the offending index on the first bad one. */
+    public static PlayerBatch parse(JSONArray array) throws IllegalArgumentException {
+        List<JSONObject> commands = new ArrayList<>();
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject command = array.optJSONObject(i);
+            String type = command != null ? command.optString("type", "") : "";
+            switch (type) {
+                case "play":
+                case "pause":
+                    break;
+                case "seek":
+                    require(command.has("position"), i, "seek needs a position");
+                    break;
+                case "speed":
+                    require(command.optDouble("speed", 0) > 0, i, "speed must be positive");
+                    break;
+                case "audioLanguage":
+                    require(!command.optString("language", "").isEmpty(), i, "audioLanguage needs a language");
+                    break;
+                case "subtitles":
+                    // {language} enables subtitles preferring that language; {enabled:false} turns them off
+                    require(command.has("language") || command.has("enabled"), i, "subtitles needs language or enabled");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Command " + i + ": unknown type '" + type + "'");
+            }
+            commands.add(command);
+        }
+        return new PlayerBatch(commands);
+    }
+
+    private static void require(boolean condition, int index, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException("Command " + index + ": " + message);
+        }
+    }
+
+    /** Main thread only. Returns the player state after every command has been applied. */
+    public JSObject apply(ExoPlayer player) {
+        TrackSelectionParameters.Builder tracks = null;
+        for (JSONObject command : commands) {
+            switch (command.optString("type")) {
+                case "play":
+                    player.play();
+                    break;
+                case "pause":
+                    player.pause();
+                    break;
+                case "seek":
+                    player.seekTo(Math.max(0, command.optLong("position")));
+                    break;
+                case "speed":
+                    player.setPlaybackSpeed((float) command.optDouble("speed", 1.0));
+                    break;
+                case "audioLanguage":
+                    if (tracks == null) {
+                        tracks = player.getTrackSelectionParameters().buildUpon();
+                    }
+                    tracks.setPreferredAudioLanguage(command.optString("language"));
+                    break;
+                case "subtitles":
+                    if (tracks == null) {
+                        tracks = player.getTrackSelectionParameters().buildUpon();
+                    }
+                    boolean enabled = command.optBoolean("enabled", true);
+                    tracks.setTrackTypeDisabled(C.TRACK_TYPE_TEXT, !enabled);
+                    if (enabled && command.has("language")) {
+                        tracks.setPreferredTextLanguage(command.optString("language"));
+                    }
+                    break;
+            }
+        }
+        if (tracks != null) {
+            player.setTrackSelectionParameters(tracks.build());
+        }
+
+        JSObject result = new JSObject();
+        result.put("applied", commands.size());
+        result.put("position", player.getCurrentPosition());
+        long duration = player.getDuration();
+        result.put("duration", duration == C.TIME_UNSET ? -1 : duration);
+        result.put("playing", player.getPlayWhenReady());
+        result.put("speed", player.getPlaybackParameters().speed);
+        return result;
+    }
+}
@@ -0,0 +1,219 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheKeyFactory;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-disk LRU cache of fetched media byte ranges, shared by every playback session.
+ * Entries are keyed on the stream URL with URL-signing query parameters removed, so re-opening
+ * an episode with a freshly signed link still hits the cache. Parameters are dropped only when
+ * the rest of a known signing scheme is present; on their own, {@code token}, {@code hash} or
+ * {@code key} often name the content itself. HLS/DASH/SmoothStreaming manifests are never
+ * cached, since live playlists are refreshed at the same URL.
+ */
+public final class PlayerCache {
+    private static final String PREFS_NAME = "ExoPlayerPrefs";
+    private static final String PREF_MAX_BYTES = "cache_max_bytes";
+    private static final String CACHE_DIR = "exoplayer-media";
+    private static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024; // 512 MB
+    private static final long MIN_MAX_BYTES = 32L * 1024 * 1024;
+
+    // Signing schemes, lower case: when the first two parameters are both present, all of them
+    // are dropped. S3 SigV4 (x-amz-signature) is handled separately and drops every x-amz-*.
+    private static final String[][] SIGNING_SCHEMES = {
+        { "signature", "key-pair-id", "expires", "policy" }, // CloudFront
+        { "signature", "awsaccesskeyid", "expires" },        // S3 SigV2
+        { "signature", "expires" },
+        { "sig", "expires" },
+    };
+
+    private static final CacheKeyFactory CACHE_KEY_FACTORY = (DataSpec dataSpec) ->
+        dataSpec.key != null ? dataSpec.key : buildCacheKey(dataSpec.uri);
+
+    private static SimpleCache cache;
+    private static long maxBytes;
+
+    private PlayerCache() {}
+
+    public static synchronized SimpleCache getCache(Context context) {
+        if (cache == null) {
+            Context appContext = context.getApplicationContext();
+            maxBytes = getConfiguredMaxBytes(appContext);
+            cache = new SimpleCache(
+                new File(appContext.getCacheDir(), CACHE_DIR),
+                new LeastRecentlyUsedCacheEvictor(maxBytes),
+                new StandaloneDatabaseProvider(appContext));
+        }
+        return cache;
+    }
+
+    /**
+     * Wraps an upstream factory so media reads are served from disk when the range is already
+     * cached. Manifests and playlists always go upstream.
+     */
+    public static DataSource.Factory wrap(Context context, DataSource.Factory upstreamFactory) {
+        CacheDataSource.Factory cachedFactory = new CacheDataSource.Factory()
+            .setCache(getCache(context))
+            .setUpstreamDataSourceFactory(upstreamFactory)
+            .setCacheKeyFactory(CACHE_KEY_FACTORY)
+            .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+        return () -> new ManifestBypassDataSource(cachedFactory.createDataSource(), upstreamFactory.createDataSource());
+    }
+
+    /** Whether {@code uri} looks like an adaptive streaming manifest or playlist. */
+    static boolean isManifest(Uri uri) {
+        return Util.inferContentType(uri) != C.CONTENT_TYPE_OTHER;
+    }
+
+    public static synchronized long getUsedBytes(Context context) {
+        return getCache(context).getCacheSpace();
+    }
+
+    public static synchronized long getMaxBytes(Context context) {
+        getCache(context);
+        return maxBytes;
+    }
+
+    /** Removes every cached resource that is not currently being read or written. */
+    public static synchronized void clear(Context context) {
+        SimpleCache simpleCache = getCache(context);
+        for (String key : new ArrayList<>(simpleCache.getKeys())) {
+            simpleCache.removeResource(key);
+        }
+    }
+
+    /** Persists a new size cap. The evictor's cap is fixed per cache instance, so it applies from the next launch. */
+    public static void setMaxBytes(Context context, long bytes) {
+        context.getApplicationContext()
+            .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+            .edit()
+            .putLong(PREF_MAX_BYTES, Math.max(MIN_MAX_BYTES, bytes))
+            .apply();
+    }
+
+    private static long getConfiguredMaxBytes(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return Math.max(MIN_MAX_BYTES, prefs.getLong(PREF_MAX_BYTES, DEFAULT_MAX_BYTES));
+    }
+
+    /** Hex SHA-1 of a cache key, for use as a file name. */
+    public static String sha1Hex(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    public static String buildCacheKey(Uri uri) {
+        if (uri.getQuery() == null) {
+            return uri.toString();
+        }
+        Set<String> names = new HashSet<>();
+        for (String name : uri.getQueryParameterNames()) {
+            names.add(name.toLowerCase(Locale.ROOT));
+        }
+        Set<String> signing = new HashSet<>();
+        for (String[] scheme : SIGNING_SCHEMES) {
+            if (names.contains(scheme[0]) && names.contains(scheme[1])) {
+                signing.addAll(Arrays.asList(scheme));
+            }
+        }
+        boolean sigV4 = names.contains("x-amz-signature");
+        if (signing.isEmpty() && !sigV4) {
+            return uri.toString();
+        }
+        Uri.Builder builder = uri.buildUpon().clearQuery();
+        for (String name : uri.getQueryParameterNames()) {
+            String lowerName = name.toLowerCase(Locale.ROOT);
+            if (signing.contains(lowerName) || (sigV4 && lowerName.startsWith("x-amz-"))) {
+                continue;
+            }
+            for (String value : uri.getQueryParameters(name)) {
+                builder.appendQueryParameter(name, value);
+            }
+        }
+        return builder.build().toString();
+    }
+
+    /**
+     * Picks the cache or the plain upstream per open(): manifests and playlists are read fresh,
+     * everything else (progressive media, segments) through the cache.
+     */
+    private static final class ManifestBypassDataSource implements DataSource {
+        private final DataSource cached;
+        private final DataSource upstream;
+        private DataSource current;
+
+        ManifestBypassDataSource(DataSource cached, DataSource upstream) {
+            this.cached = cached;
+            this.upstream = upstream;
+        }
+
+        @Override
+        public void addTransferListener(TransferListener transferListener) {
+            cached.addTransferListener(transferListener);
+            upstream.addTransferListener(transferListener);
+        }
+
+        @Override
+        public long open(DataSpec dataSpec) throws IOException {
+            current = isManifest(dataSpec.uri) ? upstream : cached;
+            return current.open(dataSpec);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return current.read(buffer, offset, length);
+        }
+
+        @Override
+        public Uri getUri() {
+            return current != null ? current.getUri() : null;
+        }
+
+        @Override
+        public Map<String, List<String>> getResponseHeaders() {
+            return current != null ? current.getResponseHeaders() : Collections.emptyMap();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                try {
+                    current.close();
+                } finally {
+                    current = null;
+                }
+            }
+        }
+    }
+}
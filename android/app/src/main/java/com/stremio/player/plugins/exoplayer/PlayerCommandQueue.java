@@ -0,0 +1,43 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.os.Handler;
+import android.os.Looper;
+import com.google.android.exoplayer2.ExoPlayer;
+
+/**
+ * Funnels player mutations from plugin threads onto the main looper, the only thread that may
+ * touch the player. Commands run in submission order against whichever player PlaybackService
+ * has attached at that moment, and are dropped when there is none.
+ */
+public final class PlayerCommandQueue {
+
+    public interface Command {
+        void run(ExoPlayer player);
+    }
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static ExoPlayer player; // main thread only
+
+    private PlayerCommandQueue() {}
+
+    /** Main thread only. */
+    static void setPlayer(ExoPlayer newPlayer) {
+        player = newPlayer;
+    }
+
+    /** Any thread. */
+    public static void post(Command command) {
+        post(command, null);
+    }
+
+    /** Any thread. {@code onNoPlayer} runs on the main thread instead when no player is attached. */
+    public static void post(Command command, Runnable onNoPlayer) {
+        mainHandler.post(() -> {
+            if (player != null) {
+                command.run(player);
+            } else if (onNoPlayer != null) {
+                onNoPlayer.run();
+            }
+        });
+    }
+}
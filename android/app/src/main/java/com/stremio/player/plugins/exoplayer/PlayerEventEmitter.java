@@ -0,0 +1,215 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.os.Handler;
+import android.os.Looper;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.Tracks;
+
+/**
+ * Pushes player state to JS through ExoPlayerPlugin listeners so the web UI does not have to
+ * poll over the bridge. Position ticks are coalesced to one per interval, only while playing,
+ * and skipped when nothing moved; state changes, seeks and pauses emit immediately.
+ * Lives in PlaybackService so the stream survives activity recreation. Main thread only.
+ */
+public class PlayerEventEmitter implements Player.Listener {
+    public static final String EVENT_STATE = "stateChange";
+    public static final String EVENT_TIME = "timeUpdate";
+    public static final String EVENT_TRACKS = "tracksChange";
+    public static final String EVENT_ERROR = "error";
+
+    private static final long DEFAULT_POSITION_INTERVAL_MS = 1000;
+    private static final long MIN_POSITION_INTERVAL_MS = 100;
+    private static long positionIntervalMs = DEFAULT_POSITION_INTERVAL_MS;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable tickRunnable = this::tick;
+    private Player player;
+    private long lastPosition = C.TIME_UNSET;
+    private long lastBufferedPosition = C.TIME_UNSET;
+
+    /** Sets how often position ticks are sent while playing; takes effect on the next tick. */
+    public static void setPositionIntervalMs(long intervalMs) {
+        positionIntervalMs = Math.max(MIN_POSITION_INTERVAL_MS, intervalMs);
+    }
+
+    public void setPlayer(Player newPlayer) {
+        if (player == newPlayer) {
+            return;
+        }
+        if (player != null) {
+            player.removeListener(this);
+        }
+        handler.removeCallbacks(tickRunnable);
+        player = newPlayer;
+        lastPosition = C.TIME_UNSET;
+        lastBufferedPosition = C.TIME_UNSET;
+        if (player != null) {
+            player.addListener(this);
+            emitState();
+            emitTime(true);
+            emitTracks(player.getCurrentTracks());
+            updateTicker();
+        } else {
+            JSObject state = new JSObject();
+            state.put("state", "idle");
+            state.put("playing", false);
+            state.put("playWhenReady", false);
+            emit(EVENT_STATE, state);
+        }
+    }
+
+    @Override
+    public void onPlaybackStateChanged(int playbackState) {
+        emitState();
+        emitTime(true);
+    }
+
+    @Override
+    public void onPlayWhenReadyChanged(boolean playWhenReady, int reason) {
+        emitState();
+    }
+
+    @Override
+    public void onIsPlayingChanged(boolean isPlaying) {
+        emitState();
+        // Paused or stalled: one final tick so the UI shows where playback stopped
+        emitTime(true);
+        updateTicker();
+    }
+
+    @Override
+    public void onPositionDiscontinuity(Player.PositionInfo oldPosition, Player.PositionInfo newPosition, int reason) {
+        emitTime(true);
+    }
+
+    @Override
+    public void onTimelineChanged(Timeline timeline, int reason) {
+        // Duration usually becomes known here
+        emitTime(true);
+    }
+
+    @Override
+    public void onTracksChanged(Tracks tracks) {
+        emitTracks(tracks);
+    }
+
+    @Override
+    public void onPlayerError(PlaybackException error) {
+        JSObject data = new JSObject();
+        data.put("code", error.getErrorCodeName());
+        data.put("message", error.getMessage());
+        emit(EVENT_ERROR, data);
+    }
+
+    private void updateTicker() {
+        handler.removeCallbacks(tickRunnable);
+        if (player != null && player.isPlaying()) {
+            handler.postDelayed(tickRunnable, positionIntervalMs);
+        }
+    }
+
+    private void tick() {
+        emitTime(false);
+        updateTicker();
+    }
+
+    private void emitTime(boolean force) {
+        if (player == null) {
+            return;
+        }
+        long position = player.getCurrentPosition();
+        long bufferedPosition = player.getBufferedPosition();
+        if (!force && position == lastPosition && bufferedPosition == lastBufferedPosition) {
+            return;
+        }
+        lastPosition = position;
+        lastBufferedPosition = bufferedPosition;
+
+        JSObject data = new JSObject();
+        data.put("position", position);
+        long duration = player.getDuration();
+        data.put("duration", duration == C.TIME_UNSET ? -1 : duration);
+        data.put("bufferedPosition", bufferedPosition);
+        emit(EVENT_TIME, data);
+    }
+
+    private void emitState() {
+        if (player == null) {
+            return;
+        }
+        JSObject data = new JSObject();
+        data.put("state", stateName(player.getPlaybackState()));
+        data.put("playing", player.isPlaying());
+        data.put("playWhenReady", player.getPlayWhenReady());
+        data.put("speed", player.getPlaybackParameters().speed);
+        emit(EVENT_STATE, data);
+    }
+
+    private void emitTracks(Tracks tracks) {
+        JSArray list = new JSArray();
+        for (Tracks.Group group : tracks.getGroups()) {
+            String type = trackTypeName(group.getType());
+            if (type == null) {
+                continue;
+            }
+            for (int i = 0; i < group.length; i++) {
+                Format format = group.getTrackFormat(i);
+                JSObject track = new JSObject();
+                track.put("type", type);
+                track.put("id", format.id);
+                track.put("language", format.language);
+                track.put("label", format.label);
+                track.put("selected", group.isTrackSelected(i));
+                if (format.height != Format.NO_VALUE) {
+                    track.put("height", format.height);
+                }
+                if (format.bitrate != Format.NO_VALUE) {
+                    track.put("bitrate", format.bitrate);
+                }
+                list.put(track);
+            }
+        }
+        JSObject data = new JSObject();
+        data.put("tracks", list);
+        emit(EVENT_TRACKS, data);
+    }
+
+    private static String stateName(int state) {
+        switch (state) {
+            case Player.STATE_BUFFERING:
+                return "buffering";
+            case Player.STATE_READY:
+                return "ready";
+            case Player.STATE_ENDED:
+                return "ended";
+            default:
+                return "idle";
+        }
+    }
+
+    private static String trackTypeName(int type) {
+        switch (type) {
+            case C.TRACK_TYPE_VIDEO:
+                return "video";
+            case C.TRACK_TYPE_AUDIO:
+                return "audio";
+            case C.TRACK_TYPE_TEXT:
+                return "text";
+            default:
+                return null;
+        }
+    }
+
+    private static void emit(String event, JSObject data) {
+        ExoPlayerPlugin plugin = ExoPlayerPlugin.getInstance();
+        if (plugin != null) {
+            plugin.emit(event, data);
+        }
+    }
+}
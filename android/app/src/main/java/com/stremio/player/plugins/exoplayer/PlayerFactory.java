@@ -0,0 +1,113 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.MediaItem.SubtitleConfiguration;
+import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.util.MimeTypes;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds players and media items the same way for PlaybackService and PlayerPreloader,
+ * so a preloaded player is indistinguishable from one the service would have created.
+ * Players must be created on the main thread; that is the looper the activity drives them from.
+ */
+public final class PlayerFactory {
+
+    private PlayerFactory() {}
+
+    public static DefaultTrackSelector createTrackSelector(Context context) {
+        // Create track selector with parameters
+        DefaultTrackSelector.Parameters parameters = new DefaultTrackSelector.Parameters.Builder(context)
+            .setPreferredTextLanguage("en")
+            .setSelectUndeterminedTextLanguage(true)
+            .setPreferredAudioLanguage(null) // Don't set a default audio language
+            .build();
+
+        DefaultTrackSelector trackSelector = new DefaultTrackSelector(context);
+        trackSelector.setParameters(parameters);
+        return trackSelector;
+    }
+
+    /** {@code streamHeaders} supplies each stream's headers; the player has no defaults of its own. */
+    public static ExoPlayer createPlayer(Context context, DefaultTrackSelector trackSelector,
+                                         StreamHeaders streamHeaders, AdaptiveLoadControl.Config bufferConfig) {
+        // Create data source factory on the shared HTTP engine, backed by the disk cache, adding the
+        // headers of the stream each request belongs to; external subtitles are served from
+        // SubtitlePipeline's converted files
+        DataSource.Factory dataSourceFactory = SubtitlePipeline.wrap(
+            streamHeaders.wrap(PlayerNetwork.createCachedDataSourceFactory(context, null)));
+
+        return new ExoPlayer.Builder(context)
+            .setTrackSelector(trackSelector)
+            .setMediaSourceFactory(new DefaultMediaSourceFactory(dataSourceFactory))
+            .setLoadControl(new AdaptiveLoadControl(context, bufferConfig))
+            .build();
+    }
+
+    public static MediaItem buildMediaItem(String url, List<SubtitleConfiguration> subtitleConfigurations) {
+        // Create media item with subtitles
+        MediaItem.Builder mediaItemBuilder = new MediaItem.Builder()
+            .setUri(url);
+
+        // Add subtitle configurations
+        if (subtitleConfigurations != null && !subtitleConfigurations.isEmpty()) {
+            mediaItemBuilder.setSubtitleConfigurations(subtitleConfigurations);
+        }
+        return mediaItemBuilder.build();
+    }
+
+    public static Map<String, String> parseHeaders(JSONObject json) {
+        Map<String, String> headerMap = new HashMap<>();
+        try {
+            if (json != null) {
+                Iterator<String> keys = json.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    headerMap.put(key, json.getString(key));
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return headerMap;
+    }
+
+    public static List<SubtitleConfiguration> parseSubtitles(JSONArray subtitles) {
+        List<SubtitleConfiguration> configs = new ArrayList<>();
+        if (subtitles == null) {
+            return configs;
+        }
+
+        try {
+            for (int i = 0; i < subtitles.length(); i++) {
+                JSONObject subtitle = subtitles.getJSONObject(i);
+                String url = subtitle.getString("url");
+                String language = subtitle.getString("language");
+
+                SubtitleConfiguration config = new SubtitleConfiguration.Builder(Uri.parse(url))
+                    .setMimeType(MimeTypes.TEXT_VTT) // SubtitlePipeline converts every format to VTT
+                    .setLanguage(language)
+                    .setSelectionFlags(C.SELECTION_FLAG_DEFAULT)
+                    .build();
+
+                configs.add(config);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return configs;
+    }
+}
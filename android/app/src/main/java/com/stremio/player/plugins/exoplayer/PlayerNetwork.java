@@ -0,0 +1,115 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import com.google.android.exoplayer2.ext.okhttp.OkHttpDataSource;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import java.io.IOException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * Process-wide HTTP engine for every native fetch path (playback, thumbnails, subtitles).
+ * All callers share one OkHttp client, so they share its HTTP/2 connections, keep-alive
+ * pool and TLS session cache instead of each paying for a cold handshake.
+ */
+public final class PlayerNetwork {
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final long CONNECT_TIMEOUT_MS = 15000;
+    private static final long READ_TIMEOUT_MS = 30000;
+    private static final int TLS_SESSION_CACHE_SIZE = 64;
+    private static final int TLS_SESSION_TIMEOUT_SECONDS = 60 * 60;
+
+    private static OkHttpClient httpClient;
+
+    private PlayerNetwork() {}
+
+    public static synchronized OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .readTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .followRedirects(true)
+                .followSslRedirects(true)
+                .retryOnConnectionFailure(true);
+
+            try {
+                // One SSLContext for the whole process so resumed TLS sessions survive across requests
+                TrustManagerFactory trustManagerFactory =
+                    TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+                trustManagerFactory.init((KeyStore) null);
+                TrustManager[] trustManagers = trustManagerFactory.getTrustManagers();
+                X509TrustManager trustManager = (X509TrustManager) trustManagers[0];
+
+                SSLContext sslContext = SSLContext.getInstance("TLS");
+                sslContext.init(null, new TrustManager[] { trustManager }, null);
+                sslContext.getClientSessionContext().setSessionCacheSize(TLS_SESSION_CACHE_SIZE);
+                sslContext.getClientSessionContext().setSessionTimeout(TLS_SESSION_TIMEOUT_SECONDS);
+                builder.sslSocketFactory(sslContext.getSocketFactory(), trustManager);
+            } catch (Exception e) {
+                // Fall back to OkHttp's platform defaults
+                e.printStackTrace();
+            }
+
+            httpClient = builder.build();
+        }
+        return httpClient;
+    }
+
+    /** HTTP-only factory with the caller's headers applied to every request. */
+    public static OkHttpDataSource.Factory createHttpDataSourceFactory(Map<String, String> headers) {
+        OkHttpDataSource.Factory factory = new OkHttpDataSource.Factory(getHttpClient());
+        if (headers != null && !headers.isEmpty()) {
+            factory.setDefaultRequestProperties(headers);
+        }
+        return factory;
+    }
+
+    /** HTTP goes through the shared engine, file/content URIs are read locally. */
+    public static DataSource.Factory createDataSourceFactory(Context context, Map<String, String> headers) {
+        return new DefaultDataSource.Factory(context.getApplicationContext(),
+            createHttpDataSourceFactory(headers));
+    }
+
+    /** Factory for the player: like {@link #createDataSourceFactory} but HTTP reads go through the disk cache. */
+    public static DataSource.Factory createCachedDataSourceFactory(Context context, Map<String, String> headers) {
+        return new DefaultDataSource.Factory(context.getApplicationContext(),
+            PlayerCache.wrap(context, createHttpDataSourceFactory(headers)));
+    }
+
+    /** Blocking read of a whole resource, or of {@code length} bytes from {@code position}. */
+    public static byte[] readBytes(DataSource.Factory factory, Uri uri, long position, long length)
+            throws IOException {
+        DataSource dataSource = factory.createDataSource();
+        try {
+            dataSource.open(new DataSpec.Builder()
+                .setUri(uri)
+                .setPosition(position)
+                .setLength(length > 0 ? length : C.LENGTH_UNSET)
+                .build());
+            return DataSourceUtil.readToEnd(dataSource);
+        } finally {
+            DataSourceUtil.closeQuietly(dataSource);
+        }
+    }
+
+    public static byte[] readBytes(DataSource.Factory factory, Uri uri) throws IOException {
+        return readBytes(factory, uri, 0, C.LENGTH_UNSET);
+    }
+}
@@ -0,0 +1,137 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem.SubtitleConfiguration;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Process-level holder for a player that starts buffering before ExoPlayerActivity opens.
+ * The preloaded player is prepared with playWhenReady off; the activity adopts it through
+ * {@link #take} when the URL, headers, subtitles and buffer config all match what it is about
+ * to play, otherwise it is released.
+ * All methods must be called on the main thread.
+ */
+public final class PlayerPreloader {
+    private static final long PRELOAD_EXPIRY_MS = 2 * 60 * 1000; // release if never adopted
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static final Runnable expireRunnable = PlayerPreloader::clear;
+    private static PreloadedPlayer preloaded;
+
+    public static final class PreloadedPlayer {
+        public final String url;
+        public final ExoPlayer player;
+        public final DefaultTrackSelector trackSelector;
+        public final StreamHeaders streamHeaders;
+        private final Map<String, String> headers;
+        private final List<SubtitleConfiguration> subtitleConfigurations;
+        private final AdaptiveLoadControl.Config bufferConfig;
+
+        PreloadedPlayer(String url, ExoPlayer player, DefaultTrackSelector trackSelector, StreamHeaders streamHeaders,
+                        Map<String, String> headers, List<SubtitleConfiguration> subtitleConfigurations,
+                        AdaptiveLoadControl.Config bufferConfig) {
+            this.url = url;
+            this.player = player;
+            this.trackSelector = trackSelector;
+            this.streamHeaders = streamHeaders;
+            this.headers = headers;
+            this.subtitleConfigurations = subtitleConfigurations;
+            this.bufferConfig = bufferConfig;
+        }
+
+        /** Whether this player was prepared exactly as a fresh one for these arguments would be. */
+        boolean matches(String url, Map<String, String> headers, List<SubtitleConfiguration> subtitleConfigurations,
+                        AdaptiveLoadControl.Config bufferConfig) {
+            return url != null && url.equals(this.url)
+                && orEmpty(headers).equals(orEmpty(this.headers))
+                && orEmpty(subtitleConfigurations).equals(orEmpty(this.subtitleConfigurations))
+                && Objects.equals(bufferConfig, this.bufferConfig);
+        }
+    }
+
+    private PlayerPreloader() {}
+
+    public static void preload(Context context, String url, Map<String, String> headers,
+                               List<SubtitleConfiguration> subtitleConfigurations,
+                               AdaptiveLoadControl.Config bufferConfig) {
+        if (preloaded != null && preloaded.matches(url, headers, subtitleConfigurations, bufferConfig)) {
+            scheduleExpiry();
+            return;
+        }
+        clear();
+
+        boolean traced = PlayerTrace.begin("PlayerPreloader.preload");
+        try {
+            Context appContext = context.getApplicationContext();
+            DefaultTrackSelector trackSelector = PlayerFactory.createTrackSelector(appContext);
+            StreamHeaders streamHeaders = new StreamHeaders();
+            streamHeaders.put(url, headers);
+            ExoPlayer player = PlayerFactory.createPlayer(appContext, trackSelector, streamHeaders, bufferConfig);
+            SubtitlePipeline.prefetch(appContext, url, headers, subtitleConfigurations);
+            player.setMediaItem(PlayerFactory.buildMediaItem(url, subtitleConfigurations));
+            player.setPlayWhenReady(false);
+            player.prepare();
+            preloaded = new PreloadedPlayer(url, player, trackSelector, streamHeaders,
+                headers, subtitleConfigurations, bufferConfig);
+        } finally {
+            PlayerTrace.end(traced);
+        }
+        scheduleExpiry();
+    }
+
+    /** Whether a player that {@link #take} would hand over is buffering right now. Main thread only. */
+    public static boolean isPreloaded(String url, Map<String, String> headers,
+                                      List<SubtitleConfiguration> subtitleConfigurations,
+                                      AdaptiveLoadControl.Config bufferConfig) {
+        return preloaded != null && preloaded.matches(url, headers, subtitleConfigurations, bufferConfig);
+    }
+
+    /**
+     * Hands over the preloaded player if it was prepared with these same arguments; the caller
+     * then owns it. A preload that differs in any of them (stale auth headers, missing subtitles)
+     * is released instead.
+     */
+    public static PreloadedPlayer take(String url, Map<String, String> headers,
+                                       List<SubtitleConfiguration> subtitleConfigurations,
+                                       AdaptiveLoadControl.Config bufferConfig) {
+        PreloadedPlayer result = preloaded;
+        if (result == null) {
+            return null;
+        }
+        preloaded = null;
+        mainHandler.removeCallbacks(expireRunnable);
+        if (!result.matches(url, headers, subtitleConfigurations, bufferConfig)) {
+            result.player.release();
+            return null;
+        }
+        return result;
+    }
+
+    public static void clear() {
+        mainHandler.removeCallbacks(expireRunnable);
+        if (preloaded != null) {
+            preloaded.player.release();
+            preloaded = null;
+        }
+    }
+
+    private static <K, V> Map<K, V> orEmpty(Map<K, V> map) {
+        return map != null ? map : Collections.emptyMap();
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list != null ? list : Collections.emptyList();
+    }
+
+    private static void scheduleExpiry() {
+        mainHandler.removeCallbacks(expireRunnable);
+        mainHandler.postDelayed(expireRunnable, PRELOAD_EXPIRY_MS);
+    }
+}
@@ -0,0 +1,242 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import com.getcapacitor.JSObject;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.MediaItem.SubtitleConfiguration;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Upcoming episodes for the playing title. The next item is added to the player's playlist only
+ * during the last {@link #PREBUFFER_WINDOW_MS} of the current one, so ExoPlayer starts buffering
+ * it once the current item is fully loaded and the switch, automatic or through the next-episode
+ * button, plays from memory. Played items are dropped from the playlist, keeping the current item
+ * at index 0. Lives in PlaybackService. Main thread only.
+ */
+public class PlayerQueue implements Player.Listener {
+    public static final String EVENT_ITEM_CHANGE = "queueItemChange";
+
+    private static final long PREBUFFER_WINDOW_MS = 3 * 60 * 1000;
+    private static final long CHECK_INTERVAL_MS = 5000;
+    private static final String MEDIA_ID_PREFIX = "queue:";
+
+    private static PlayerQueue active;
+    private static int nextMediaId = 0;
+
+    public interface Listener {
+        /** The player moved on to {@code item}. */
+        void onItemChanged(Item item);
+    }
+
+    /** One episode: what play() takes for a single stream. */
+    public static final class Item {
+        public final String url;
+        public final String title;
+        public final Map<String, String> headers;
+        public final List<SubtitleConfiguration> subtitles;
+        public final String progressKey;
+        public final SubtitleAddonFetcher.Lookup subtitleLookup;
+
+        Item(String url, String title, Map<String, String> headers, List<SubtitleConfiguration> subtitles,
+             String progressKey, SubtitleAddonFetcher.Lookup subtitleLookup) {
+            this.url = url;
+            this.title = title;
+            this.headers = headers;
+            this.subtitles = subtitles;
+            this.progressKey = progressKey;
+            this.subtitleLookup = subtitleLookup;
+        }
+
+        /** Parses the plugin's queue array, skipping entries without a url. */
+        public static List<Item> fromJson(JSONArray array) {
+            List<Item> items = new ArrayList<>();
+            if (array == null) {
+                return items;
+            }
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject object = array.optJSONObject(i);
+                String url = object != null ? object.optString("url", null) : null;
+                if (url == null || url.isEmpty()) {
+                    continue;
+                }
+                items.add(new Item(
+                    url,
+                    object.optString("title", ""),
+                    PlayerFactory.parseHeaders(object.optJSONObject("headers")),
+                    PlayerFactory.parseSubtitles(object.optJSONArray("subtitles")),
+                    object.optString("progressKey", PlayerCache.buildCacheKey(Uri.parse(url))),
+                    SubtitleAddonFetcher.Lookup.fromJson(object.optJSONObject("subtitleLookup"))));
+            }
+            return items;
+        }
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable checkRunnable = this::tick;
+    private ExoPlayer player;
+    private StreamHeaders streamHeaders;
+    private List<Item> upcoming = Collections.emptyList();
+    private String queuedMediaId; // playlist entry holding upcoming.get(0), once added
+    private Item current; // null while the stream the player was attached with is playing
+
+    public PlayerQueue(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+    }
+
+    /** Replaces the upcoming items of whichever queue is attached to a player. Main thread only. */
+    public static void setActiveItems(List<Item> items) {
+        if (active != null) {
+            active.setItems(items);
+        }
+    }
+
+    /** {@code newStreamHeaders} is the player's; each item's headers are added to it when it is queued. */
+    public void setPlayer(ExoPlayer newPlayer, StreamHeaders newStreamHeaders, List<Item> items) {
+        if (player != null) {
+            player.removeListener(this);
+        }
+        handler.removeCallbacks(checkRunnable);
+        player = newPlayer;
+        streamHeaders = newStreamHeaders;
+        upcoming = items != null ? new ArrayList<>(items) : new ArrayList<>();
+        queuedMediaId = null;
+        current = null;
+        if (player != null) {
+            active = this;
+            player.addListener(this);
+            updateTicker();
+        } else if (active == this) {
+            active = null;
+        }
+    }
+
+    public void setItems(List<Item> items) {
+        if (player == null) {
+            return;
+        }
+        if (queuedMediaId != null) {
+            // Drop the pre-buffered entry; the new list decides what comes next
+            int count = player.getMediaItemCount();
+            int current = player.getCurrentMediaItemIndex();
+            if (count > current + 1) {
+                player.removeMediaItems(current + 1, count);
+            }
+            queuedMediaId = null;
+        }
+        upcoming = new ArrayList<>(items);
+        check();
+        updateTicker();
+    }
+
+    /** The queue item now playing, or null if it is still the stream the player was attached with. */
+    public Item getCurrentItem() {
+        return current;
+    }
+
+    public boolean hasNext() {
+        return !upcoming.isEmpty();
+    }
+
+    /** Jumps to the next item; it is usually buffered already. Returns false at the end of the queue. */
+    public boolean skipToNext() {
+        if (player == null || upcoming.isEmpty()) {
+            return false;
+        }
+        addNext();
+        player.seekToNextMediaItem();
+        return true;
+    }
+
+    @Override
+    public void onMediaItemTransition(MediaItem mediaItem, int reason) {
+        if (mediaItem == null || queuedMediaId == null || !queuedMediaId.equals(mediaItem.mediaId)) {
+            return;
+        }
+        Item item = upcoming.remove(0);
+        current = item;
+        queuedMediaId = null;
+        int current = player.getCurrentMediaItemIndex();
+        if (current > 0) {
+            player.removeMediaItems(0, current);
+        }
+        listener.onItemChanged(item);
+        emitItemChange(item, upcoming.size());
+        check();
+        updateTicker();
+    }
+
+    @Override
+    public void onIsPlayingChanged(boolean isPlaying) {
+        updateTicker();
+    }
+
+    @Override
+    public void onTimelineChanged(Timeline timeline, int reason) {
+        check();
+    }
+
+    private void updateTicker() {
+        handler.removeCallbacks(checkRunnable);
+        if (player != null && player.isPlaying() && !upcoming.isEmpty() && queuedMediaId == null) {
+            handler.postDelayed(checkRunnable, CHECK_INTERVAL_MS);
+        }
+    }
+
+    private void tick() {
+        check();
+        updateTicker();
+    }
+
+    private void check() {
+        if (player == null || upcoming.isEmpty() || queuedMediaId != null) {
+            return;
+        }
+        long duration = player.getDuration();
+        if (duration != C.TIME_UNSET && duration - player.getCurrentPosition() <= PREBUFFER_WINDOW_MS) {
+            addNext();
+        }
+    }
+
+    private void addNext() {
+        if (queuedMediaId != null) {
+            return;
+        }
+        Item next = upcoming.get(0);
+        streamHeaders.put(next.url, next.headers);
+        SubtitlePipeline.prefetch(context, next.url, next.headers, next.subtitles);
+        queuedMediaId = MEDIA_ID_PREFIX + nextMediaId++;
+        MediaItem mediaItem = PlayerFactory.buildMediaItem(next.url, next.subtitles)
+            .buildUpon()
+            .setMediaId(queuedMediaId)
+            .build();
+        player.addMediaItem(player.getCurrentMediaItemIndex() + 1, mediaItem);
+    }
+
+    private static void emitItemChange(Item item, int remaining) {
+        ExoPlayerPlugin plugin = ExoPlayerPlugin.getInstance();
+        if (plugin == null) {
+            return;
+        }
+        JSObject data = new JSObject();
+        data.put("url", item.url);
+        data.put("title", item.title);
+        data.put("progressKey", item.progressKey);
+        data.put("remaining", remaining);
+        plugin.emit(EVENT_ITEM_CHANGE, data);
+    }
+}
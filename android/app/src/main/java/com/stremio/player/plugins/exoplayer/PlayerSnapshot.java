@@ -0,0 +1,88 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.os.SystemClock;
+import com.getcapacitor.JSObject;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable copy of the player's observable state, published from the main thread by
+ * {@link PlayerSnapshotPublisher} and read from any thread without locking. Plugin getters use
+ * it instead of touching the player off its looper.
+ */
+public final class PlayerSnapshot {
+    private static final AtomicReference<PlayerSnapshot> current = new AtomicReference<>();
+
+    public final long positionMs;
+    public final long durationMs; // C.TIME_UNSET while unknown
+    public final long bufferedPositionMs;
+    public final boolean playing;
+    public final float speed;
+    public final int playbackState;
+    public final String audioLanguage;
+    public final String textLanguage; // null when subtitles are off
+    public final int videoHeight;
+    public final long capturedAtMs; // SystemClock.elapsedRealtime()
+
+    private PlayerSnapshot(long positionMs, long durationMs, long bufferedPositionMs, boolean playing,
+                           float speed, int playbackState, String audioLanguage, String textLanguage,
+                           int videoHeight, long capturedAtMs) {
+        this.positionMs = positionMs;
+        this.durationMs = durationMs;
+        this.bufferedPositionMs = bufferedPositionMs;
+        this.playing = playing;
+        this.speed = speed;
+        this.playbackState = playbackState;
+        this.audioLanguage = audioLanguage;
+        this.textLanguage = textLanguage;
+        this.videoHeight = videoHeight;
+        this.capturedAtMs = capturedAtMs;
+    }
+
+    /** Main thread only. Selected-track fields are passed in because they only change with the tracks. */
+    static PlayerSnapshot capture(Player player, String audioLanguage, String textLanguage, int videoHeight) {
+        return new PlayerSnapshot(
+            player.getCurrentPosition(),
+            player.getDuration(),
+            player.getBufferedPosition(),
+            player.isPlaying(),
+            player.getPlaybackParameters().speed,
+            player.getPlaybackState(),
+            audioLanguage,
+            textLanguage,
+            videoHeight,
+            SystemClock.elapsedRealtime());
+    }
+
+    /** Latest snapshot, or null when no player is attached. Any thread. */
+    public static PlayerSnapshot get() {
+        return current.get();
+    }
+
+    static void publish(PlayerSnapshot snapshot) {
+        current.set(snapshot);
+    }
+
+    /** Position now, extrapolated from the snapshot while playing so reads between publishes stay accurate. */
+    public long estimatePositionMs() {
+        if (!playing) {
+            return positionMs;
+        }
+        long estimate = positionMs + (long) ((SystemClock.elapsedRealtime() - capturedAtMs) * speed);
+        return durationMs != C.TIME_UNSET ? Math.min(estimate, durationMs) : estimate;
+    }
+
+    public JSObject toJson() {
+        JSObject data = new JSObject();
+        data.put("position", estimatePositionMs());
+        data.put("duration", durationMs == C.TIME_UNSET ? -1 : durationMs);
+        data.put("bufferedPosition", bufferedPositionMs);
+        data.put("playing", playing);
+        data.put("speed", speed);
+        data.put("audioLanguage", audioLanguage);
+        data.put("textLanguage", textLanguage);
+        data.put("videoHeight", videoHeight);
+        return data;
+    }
+}
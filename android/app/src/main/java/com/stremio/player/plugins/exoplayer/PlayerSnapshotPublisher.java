@@ -0,0 +1,85 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.os.Handler;
+import android.os.Looper;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Tracks;
+
+/**
+ * Refreshes {@link PlayerSnapshot} on every player event and at a fixed cadence while playing.
+ * Selected tracks are resolved only when the tracks change, so a tick is a handful of getters
+ * and one atomic write. Main thread only.
+ */
+public class PlayerSnapshotPublisher implements Player.Listener {
+    private static final long PUBLISH_INTERVAL_MS = 250;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable tickRunnable = this::tick;
+    private Player player;
+    private String audioLanguage;
+    private String textLanguage;
+    private int videoHeight = Format.NO_VALUE;
+
+    public void setPlayer(Player newPlayer) {
+        if (player == newPlayer) {
+            return;
+        }
+        if (player != null) {
+            player.removeListener(this);
+        }
+        handler.removeCallbacks(tickRunnable);
+        player = newPlayer;
+        if (player == null) {
+            PlayerSnapshot.publish(null);
+            return;
+        }
+        player.addListener(this);
+        updateSelectedTracks(player.getCurrentTracks());
+        tick();
+    }
+
+    @Override
+    public void onTracksChanged(Tracks tracks) {
+        updateSelectedTracks(tracks);
+    }
+
+    @Override
+    public void onEvents(Player player, Player.Events events) {
+        // Runs after the individual callbacks, once per batch of changes
+        tick();
+    }
+
+    private void tick() {
+        handler.removeCallbacks(tickRunnable);
+        if (player == null) {
+            return;
+        }
+        PlayerSnapshot.publish(PlayerSnapshot.capture(player, audioLanguage, textLanguage, videoHeight));
+        if (player.isPlaying()) {
+            handler.postDelayed(tickRunnable, PUBLISH_INTERVAL_MS);
+        }
+    }
+
+    private void updateSelectedTracks(Tracks tracks) {
+        audioLanguage = null;
+        textLanguage = null;
+        videoHeight = Format.NO_VALUE;
+        for (Tracks.Group group : tracks.getGroups()) {
+            for (int i = 0; i < group.length; i++) {
+                if (!group.isTrackSelected(i)) {
+                    continue;
+                }
+                Format format = group.getTrackFormat(i);
+                if (group.getType() == C.TRACK_TYPE_AUDIO) {
+                    audioLanguage = format.language;
+                } else if (group.getType() == C.TRACK_TYPE_TEXT) {
+                    textLanguage = format.language;
+                } else if (group.getType() == C.TRACK_TYPE_VIDEO) {
+                    videoHeight = format.height;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Named android.os.Trace sections and counters for the native player paths, visible in
+ * Perfetto/systrace captures. Off by default and switched at runtime through
+ * ExoPlayerPlugin.setTracing(); when off every call is a single volatile read.
+ * Async sections and counters need API 29 and are skipped on older devices.
+ */
+public final class PlayerTrace {
+    public static final String SEEK = "player.seek";
+    public static final String FIRST_FRAME = "player.firstFrame";
+    public static final String REBUFFER = "player.rebuffer";
+    public static final String CONTROLS_SHOW = "controls.show";
+    public static final String CONTROLS_HIDE = "controls.hide";
+
+    private static volatile boolean enabled = false;
+
+    private PlayerTrace() {}
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Opens a synchronous section on the calling thread. Pass the result to {@link #end(boolean)}
+     * so a flag flip in between cannot unbalance the section stack.
+     */
+    public static boolean begin(String name) {
+        if (!enabled) {
+            return false;
+        }
+        Trace.beginSection(name);
+        return true;
+    }
+
+    public static void end(boolean begun) {
+        if (begun) {
+            Trace.endSection();
+        }
+    }
+
+    /** Opens a section that may end on another thread or in a later callback. */
+    public static void beginAsync(String name, int cookie) {
+        if (enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(name, cookie);
+        }
+    }
+
+    public static void endAsync(String name, int cookie) {
+        if (enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+
+    public static void counter(String name, long value) {
+        if (enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.setCounter(name, value);
+        }
+    }
+}
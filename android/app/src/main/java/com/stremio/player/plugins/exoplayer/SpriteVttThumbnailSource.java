@@ -0,0 +1,175 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.util.UriUtil;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Trickplay from a WebVTT sprite map, as published by addons and many web players: each cue
+ * points at a sprite sheet image with an {@code #xywh=x,y,w,h} region. Sheets are kept
+ * compressed and only the requested region is decoded.
+ */
+public class SpriteVttThumbnailSource implements ThumbnailSource {
+    private static final Pattern CUE_TIMING = Pattern.compile(
+        "((?:\\d+:)?\\d{1,2}:\\d{2}[.,]\\d{3})\\s*-->\\s*((?:\\d+:)?\\d{1,2}:\\d{2}[.,]\\d{3})");
+    private static final Pattern XYWH = Pattern.compile("#xywh=(\\d+),(\\d+),(\\d+),(\\d+)$");
+    private static final int MAX_OPEN_SHEETS = 2;
+
+    private static final class Cue {
+        final long startMs;
+        final long endMs;
+        final String imageUrl;
+        final Rect region; // null when the cue image is a whole picture
+
+        Cue(long startMs, long endMs, String imageUrl, Rect region) {
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.imageUrl = imageUrl;
+            this.region = region;
+        }
+    }
+
+    private final DataSource.Factory dataSourceFactory;
+    private final List<Cue> cues;
+    private final Map<String, BitmapRegionDecoder> sheets =
+        new LinkedHashMap<String, BitmapRegionDecoder>(MAX_OPEN_SHEETS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BitmapRegionDecoder> eldest) {
+                if (size() > MAX_OPEN_SHEETS) {
+                    synchronized (eldest.getValue()) {
+                        eldest.getValue().recycle();
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    private SpriteVttThumbnailSource(DataSource.Factory dataSourceFactory, List<Cue> cues) {
+        this.dataSourceFactory = dataSourceFactory;
+        this.cues = cues;
+    }
+
+    /** Parses the sprite map; returns null if it has no usable cues. */
+    public static SpriteVttThumbnailSource open(DataSource.Factory dataSourceFactory, Uri uri) throws IOException {
+        return parse(dataSourceFactory, uri,
+            new String(PlayerNetwork.readBytes(dataSourceFactory, uri), StandardCharsets.UTF_8));
+    }
+
+    static SpriteVttThumbnailSource parse(DataSource.Factory dataSourceFactory, Uri uri, String text) {
+        if (!text.replace("\uFEFF", "").trim().startsWith("WEBVTT")) {
+            return null;
+        }
+        List<Cue> cues = new ArrayList<>();
+        String[] lines = text.split("\\r?\\n");
+        for (int i = 0; i < lines.length - 1; i++) {
+            Matcher timing = CUE_TIMING.matcher(lines[i]);
+            if (!timing.find()) {
+                continue;
+            }
+            String target = lines[i + 1].trim();
+            if (target.isEmpty()) {
+                continue;
+            }
+            Rect region = null;
+            Matcher xywh = XYWH.matcher(target);
+            if (xywh.find()) {
+                int x = Integer.parseInt(xywh.group(1));
+                int y = Integer.parseInt(xywh.group(2));
+                region = new Rect(x, y, x + Integer.parseInt(xywh.group(3)), y + Integer.parseInt(xywh.group(4)));
+                target = target.substring(0, xywh.start());
+            }
+            cues.add(new Cue(parseTimestamp(timing.group(1)), parseTimestamp(timing.group(2)),
+                UriUtil.resolve(uri.toString(), target), region));
+            i++;
+        }
+        return cues.isEmpty() ? null : new SpriteVttThumbnailSource(dataSourceFactory, cues);
+    }
+
+    private static long parseTimestamp(String timestamp) {
+        String[] parts = timestamp.replace(',', '.').split(":");
+        long ms = 0;
+        for (int i = 0; i < parts.length - 1; i++) {
+            ms = ms * 60 + Long.parseLong(parts[i]);
+        }
+        return ms * 60000 + (long) (Double.parseDouble(parts[parts.length - 1]) * 1000);
+    }
+
+    @Override
+    public Bitmap getFrame(long positionMs, int width, int height) throws IOException {
+        Cue cue = findCue(positionMs);
+        BitmapRegionDecoder decoder = getSheet(cue.imageUrl);
+        if (decoder == null) {
+            return null;
+        }
+        synchronized (decoder) {
+            if (decoder.isRecycled()) {
+                return null;
+            }
+            Rect region = cue.region != null ? cue.region : new Rect(0, 0, decoder.getWidth(), decoder.getHeight());
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            return decoder.decodeRegion(region, options);
+        }
+    }
+
+    private Cue findCue(long positionMs) {
+        // Cues are in presentation order; pick the one covering the position or the last before it
+        Cue best = cues.get(0);
+        for (Cue cue : cues) {
+            if (cue.startMs > positionMs) {
+                break;
+            }
+            best = cue;
+            if (positionMs < cue.endMs) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    private BitmapRegionDecoder getSheet(String imageUrl) throws IOException {
+        synchronized (sheets) {
+            BitmapRegionDecoder decoder = sheets.get(imageUrl);
+            if (decoder != null) {
+                return decoder;
+            }
+        }
+        byte[] bytes = PlayerNetwork.readBytes(dataSourceFactory, Uri.parse(imageUrl));
+        BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(bytes, 0, bytes.length, false);
+        synchronized (sheets) {
+            BitmapRegionDecoder existing = sheets.get(imageUrl);
+            if (existing != null) {
+                // Another worker fetched the same sheet meanwhile
+                decoder.recycle();
+                return existing;
+            }
+            sheets.put(imageUrl, decoder);
+            return decoder;
+        }
+    }
+
+    @Override
+    public void release() {
+        synchronized (sheets) {
+            for (BitmapRegionDecoder decoder : sheets.values()) {
+                synchronized (decoder) {
+                    decoder.recycle();
+                }
+            }
+            sheets.clear();
+        }
+    }
+}
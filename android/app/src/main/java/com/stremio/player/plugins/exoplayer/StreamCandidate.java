@@ -0,0 +1,62 @@
+package com.stremio.player.plugins.exoplayer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/** One playable source for a title: a stream URL and the headers its host needs. */
+public final class StreamCandidate {
+    public final String url;
+    public final Map<String, String> headers;
+
+    public StreamCandidate(String url, Map<String, String> headers) {
+        this.url = url;
+        this.headers = headers;
+    }
+
+    /**
+     * Parses a list of URLs or {@code {url, headers}} objects, keeping their order and dropping
+     * repeated URLs. Entries without headers of their own use {@code defaultHeaders}.
+     */
+    public static List<StreamCandidate> fromJson(JSONArray array, Map<String, String> defaultHeaders) {
+        List<StreamCandidate> candidates = new ArrayList<>();
+        if (array == null) {
+            return candidates;
+        }
+        for (int i = 0; i < array.length(); i++) {
+            Object entry = array.opt(i);
+            if (entry instanceof String && !((String) entry).isEmpty()) {
+                candidates.add(new StreamCandidate((String) entry, defaultHeaders));
+            } else if (entry instanceof JSONObject) {
+                JSONObject object = (JSONObject) entry;
+                String url = object.optString("url", null);
+                if (url == null || url.isEmpty()) {
+                    continue;
+                }
+                JSONObject headers = object.optJSONObject("headers");
+                candidates.add(new StreamCandidate(url,
+                    headers != null ? PlayerFactory.parseHeaders(headers) : defaultHeaders));
+            }
+        }
+        return distinct(candidates);
+    }
+
+    /**
+     * The candidates with repeated URLs removed, keeping the first of each. A stream listed twice
+     * would be raced against itself, and failing over to it would retry the host that just failed.
+     */
+    public static List<StreamCandidate> distinct(List<StreamCandidate> candidates) {
+        List<StreamCandidate> result = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (StreamCandidate candidate : candidates) {
+            if (seen.add(candidate.url)) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+}
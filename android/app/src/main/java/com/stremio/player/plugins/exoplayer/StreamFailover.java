@@ -0,0 +1,82 @@
+package com.stremio.player.plugins.exoplayer;
+
+import com.getcapacitor.JSObject;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.Player;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves playback to the next candidate stream when the current host fails to load, keeping the
+ * position, subtitles and the rest of the playlist. Only load and parse errors fail over;
+ * decoder and DRM errors would fail the same way on any host. Lives in PlaybackService.
+ * Main thread only.
+ */
+public class StreamFailover implements Player.Listener {
+    public static final String EVENT_FAILOVER = "streamFailover";
+
+    public interface Listener {
+        /** Playback now reads from {@code candidate}. */
+        void onFailover(StreamCandidate candidate);
+    }
+
+    private final Listener listener;
+    private ExoPlayer player;
+    private StreamHeaders streamHeaders;
+    private List<StreamCandidate> fallbacks = new ArrayList<>();
+
+    public StreamFailover(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** {@code newStreamHeaders} is the player's; a fallback's headers are added to it when it takes over. */
+    public void setPlayer(ExoPlayer newPlayer, StreamHeaders newStreamHeaders, List<StreamCandidate> newFallbacks) {
+        if (player != null) {
+            player.removeListener(this);
+        }
+        player = newPlayer;
+        streamHeaders = newStreamHeaders;
+        fallbacks = newFallbacks != null ? new ArrayList<>(newFallbacks) : new ArrayList<>();
+        if (player != null) {
+            player.addListener(this);
+        }
+    }
+
+    /** Forgets the remaining candidates, e.g. once the queue has moved on to another title. */
+    public void clearFallbacks() {
+        fallbacks.clear();
+    }
+
+    @Override
+    public void onPlayerError(PlaybackException error) {
+        int category = error.errorCode / 1000;
+        boolean hostError = category == PlaybackException.ERROR_CODE_IO_UNSPECIFIED / 1000
+            || category == PlaybackException.ERROR_CODE_PARSING_CONTAINER_MALFORMED / 1000;
+        MediaItem current = player != null ? player.getCurrentMediaItem() : null;
+        if (!hostError || fallbacks.isEmpty() || current == null) {
+            return;
+        }
+
+        StreamCandidate next = fallbacks.remove(0);
+        int index = player.getCurrentMediaItemIndex();
+        long position = player.getCurrentPosition();
+        streamHeaders.put(next.url, next.headers);
+        player.addMediaItem(index + 1, current.buildUpon().setUri(next.url).build());
+        player.removeMediaItem(index);
+        player.seekTo(index, position);
+        player.prepare();
+
+        listener.onFailover(next);
+        ExoPlayerPlugin plugin = ExoPlayerPlugin.getInstance();
+        if (plugin != null) {
+            JSObject data = new JSObject();
+            data.put("url", next.url);
+            data.put("position", position);
+            data.put("remaining", fallbacks.size());
+            data.put("reason", error.getErrorCodeName());
+            plugin.emit(EVENT_FAILOVER, data);
+        }
+    }
+}
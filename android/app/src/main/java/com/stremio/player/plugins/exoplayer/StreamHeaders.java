@@ -0,0 +1,59 @@
+package com.stremio.player.plugins.exoplayer;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.ResolvingDataSource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Request headers for the streams of one player. Each stream's headers go to its own URL and to
+ * other requests on its origin (segments, keys, subtitles next to it), never to other hosts, so
+ * a queued episode or fallback on another host neither receives nor overrides the first
+ * stream's credentials. Created with the player and dropped with it; reads happen on the
+ * loading threads.
+ */
+public final class StreamHeaders {
+    private final Map<String, Map<String, String>> byUrl = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> byOrigin = new ConcurrentHashMap<>();
+
+    /** Headers scoped to a single stream, for fetches made outside a player (thumbnails, subtitles). */
+    public static StreamHeaders forStream(String url, Map<String, String> headers) {
+        StreamHeaders streamHeaders = new StreamHeaders();
+        streamHeaders.put(url, headers);
+        return streamHeaders;
+    }
+
+    /** Headers for {@code url}; a later stream on the same origin takes over that origin. */
+    public void put(String url, Map<String, String> headers) {
+        if (url == null || headers == null || headers.isEmpty()) {
+            return;
+        }
+        byUrl.put(url, headers);
+        String origin = HostScoreboard.originOf(url);
+        if (origin != null) {
+            byOrigin.put(origin, headers);
+        }
+    }
+
+    public void clear() {
+        byUrl.clear();
+        byOrigin.clear();
+    }
+
+    /** Adds the matching stream's headers to every request made through {@code upstreamFactory}. */
+    public DataSource.Factory wrap(DataSource.Factory upstreamFactory) {
+        return new ResolvingDataSource.Factory(upstreamFactory, dataSpec -> {
+            Map<String, String> headers = get(dataSpec.uri.toString());
+            return headers != null ? dataSpec.withAdditionalHeaders(headers) : dataSpec;
+        });
+    }
+
+    private Map<String, String> get(String url) {
+        Map<String, String> headers = byUrl.get(url);
+        if (headers != null) {
+            return headers;
+        }
+        String origin = HostScoreboard.originOf(url);
+        return origin != null ? byOrigin.get(origin) : null;
+    }
+}
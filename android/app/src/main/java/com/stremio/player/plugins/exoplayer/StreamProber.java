@@ -0,0 +1,314 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Measures how well a stream host delivers by reading the first bytes of the stream with a range
+ * request: time to first byte, and throughput over the body once it starts flowing. The same read
+ * tells the container apart from its magic bytes. Probes run on a small shared pool over the
+ * playback HTTP client, so a winning host's connection is already warm when the player opens it.
+ * A probe can be cancelled from any thread.
+ */
+public final class StreamProber {
+    public static final int DEFAULT_PROBE_BYTES = 256 * 1024;
+    public static final String CONTAINER_UNKNOWN = "unknown";
+    private static final int MAX_THREADS = 6;
+    private static final int BUFFER_BYTES = 16 * 1024;
+    private static final int HEAD_BYTES = 512;
+
+    private static ThreadPoolExecutor executor;
+
+    /** Outcome of one probe; {@code ok} is false when the host failed or ran out of time. */
+    public static final class Result {
+        public final String url;
+        public final boolean ok;
+        public final int statusCode;
+        public final long ttfbMs;
+        public final long bytesRead;
+        public final long throughputBps;
+        public final String error;
+        public final String contentType;
+        public final String container;
+        public final long contentLength;
+        public final boolean rangeSupported;
+
+        Result(String url, boolean ok, int statusCode, long ttfbMs, long bytesRead,
+               long throughputBps, String error) {
+            this(url, ok, statusCode, ttfbMs, bytesRead, throughputBps, error, null, CONTAINER_UNKNOWN, -1, false);
+        }
+
+        Result(String url, boolean ok, int statusCode, long ttfbMs, long bytesRead, long throughputBps,
+               String error, String contentType, String container, long contentLength, boolean rangeSupported) {
+            this.url = url;
+            this.ok = ok;
+            this.statusCode = statusCode;
+            this.ttfbMs = ttfbMs;
+            this.bytesRead = bytesRead;
+            this.throughputBps = throughputBps;
+            this.error = error;
+            this.contentType = contentType;
+            this.container = container;
+            this.contentLength = contentLength;
+            this.rangeSupported = rangeSupported;
+        }
+    }
+
+    /** A single range read against one candidate. */
+    public static final class Probe {
+        private final StreamCandidate candidate;
+        private final int probeBytes;
+        private final long timeoutMs;
+        private volatile Call call;
+        private volatile boolean cancelled;
+
+        public Probe(StreamCandidate candidate, int probeBytes, long timeoutMs) {
+            this.candidate = candidate;
+            this.probeBytes = probeBytes;
+            this.timeoutMs = timeoutMs;
+        }
+
+        /** Blocking; call from a worker thread. */
+        public Result run() {
+            long startMs = SystemClock.elapsedRealtime();
+            Request.Builder request = new Request.Builder()
+                .url(candidate.url)
+                .header("Range", "bytes=0-" + (probeBytes - 1));
+            if (candidate.headers != null) {
+                for (Map.Entry<String, String> header : candidate.headers.entrySet()) {
+                    request.header(header.getKey(), header.getValue());
+                }
+            }
+            OkHttpClient client = PlayerNetwork.getHttpClient().newBuilder()
+                .callTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+            call = client.newCall(request.build());
+            if (cancelled) {
+                call.cancel();
+            }
+            long ttfbMs = -1;
+            long bytesRead = 0;
+            int statusCode = 0;
+            try (Response response = call.execute()) {
+                statusCode = response.code();
+                ttfbMs = SystemClock.elapsedRealtime() - startMs;
+                ResponseBody body = response.body();
+                if (!response.isSuccessful() || body == null) {
+                    return new Result(candidate.url, false, statusCode, ttfbMs, 0, 0, "HTTP " + statusCode);
+                }
+                byte[] buffer = new byte[BUFFER_BYTES];
+                byte[] head = new byte[HEAD_BYTES];
+                int headLength = 0;
+                long bodyStartMs = SystemClock.elapsedRealtime();
+                try (InputStream input = body.byteStream()) {
+                    int read;
+                    while (bytesRead < probeBytes && (read = input.read(buffer)) != -1) {
+                        if (headLength < HEAD_BYTES) {
+                            int copy = Math.min(read, HEAD_BYTES - headLength);
+                            System.arraycopy(buffer, 0, head, headLength, copy);
+                            headLength += copy;
+                        }
+                        bytesRead += read;
+                    }
+                }
+                long elapsedMs = Math.max(1, SystemClock.elapsedRealtime() - bodyStartMs);
+                String contentType = response.header("Content-Type");
+                return new Result(candidate.url, bytesRead > 0, statusCode, ttfbMs, bytesRead,
+                    bytesRead * 8 * 1000 / elapsedMs, bytesRead > 0 ? null : "Empty body",
+                    contentType, detectContainer(head, headLength, contentType),
+                    parseTotalLength(response), statusCode == 206);
+            } catch (Exception e) {
+                return new Result(candidate.url, false, statusCode, ttfbMs, bytesRead, 0,
+                    cancelled ? "Cancelled" : e.getClass().getSimpleName());
+            }
+        }
+
+        public void cancel() {
+            cancelled = true;
+            Call current = call;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
+    private StreamProber() {}
+
+    /** Receives the outcome of {@link #probeAll}. */
+    public interface ResultsCallback {
+        /** Called once on the main thread with one result per candidate. */
+        void onResults(List<Result> results);
+    }
+
+    /**
+     * Probes every candidate in parallel and reports what came back by {@code deadlineMs},
+     * fastest host first; candidates that failed or did not finish in time come last, in the
+     * order they were given. Returns at once; the probes report back themselves, so no thread
+     * waits for them.
+     */
+    public static void probeAll(List<StreamCandidate> candidates, int probeBytes, long deadlineMs,
+                                ResultsCallback callback) {
+        ProbeBatch batch = new ProbeBatch(candidates, callback);
+        synchronized (batch) {
+            batch.pending = candidates.size();
+            for (int i = 0; i < candidates.size(); i++) {
+                final int index = i;
+                Probe probe = new Probe(candidates.get(i), probeBytes, deadlineMs);
+                batch.probes.add(probe);
+                batch.futures.add(getExecutor().submit(() -> batch.report(index, probe.run())));
+            }
+            if (batch.pending == 0) {
+                batch.finish();
+                return;
+            }
+        }
+        batch.handler.postDelayed(batch::finish, deadlineMs);
+    }
+
+    /** State of one probeAll() call; guarded by its own lock. */
+    private static final class ProbeBatch {
+        final Handler handler = new Handler(Looper.getMainLooper());
+        final List<StreamCandidate> candidates;
+        final ResultsCallback callback;
+        final Result[] results;
+        final List<Probe> probes = new ArrayList<>();
+        final List<Future<?>> futures = new ArrayList<>();
+        int pending;
+        boolean finished;
+
+        ProbeBatch(List<StreamCandidate> candidates, ResultsCallback callback) {
+            this.candidates = candidates;
+            this.callback = callback;
+            this.results = new Result[candidates.size()];
+        }
+
+        synchronized void report(int index, Result result) {
+            if (finished) {
+                return;
+            }
+            results[index] = result;
+            if (--pending == 0) {
+                finish();
+            }
+        }
+
+        synchronized void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            handler.removeCallbacksAndMessages(null);
+            List<Result> list = new ArrayList<>();
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] != null) {
+                    list.add(results[i]);
+                    continue;
+                }
+                // Still queued or reading when time ran out
+                probes.get(i).cancel();
+                futures.get(i).cancel(false);
+                list.add(new Result(candidates.get(i).url, false, 0, -1, 0, 0, "Timeout"));
+            }
+            Collections.sort(list, (a, b) -> {
+                if (a.ok != b.ok) {
+                    return a.ok ? -1 : 1;
+                }
+                if (!a.ok) {
+                    return 0; // stable sort keeps the caller's order
+                }
+                if (a.throughputBps != b.throughputBps) {
+                    return Long.compare(b.throughputBps, a.throughputBps);
+                }
+                return Long.compare(a.ttfbMs, b.ttfbMs);
+            });
+            handler.post(() -> callback.onResults(list));
+        }
+    }
+
+    /** Names the container from the first bytes of the stream, falling back to the Content-Type. */
+    static String detectContainer(byte[] head, int length, String contentType) {
+        String text = new String(head, 0, length, StandardCharsets.ISO_8859_1);
+        if (text.startsWith("#EXTM3U")) {
+            return "hls";
+        }
+        if (text.contains("<MPD")) {
+            return "dash";
+        }
+        if (length >= 4 && (head[0] & 0xff) == 0x1a && (head[1] & 0xff) == 0x45
+                && (head[2] & 0xff) == 0xdf && (head[3] & 0xff) == 0xa3) {
+            return text.contains("webm") ? "webm" : "matroska";
+        }
+        if (length >= 8 && text.startsWith("ftyp", 4)) {
+            return "mp4";
+        }
+        if (length > 188 && head[0] == 0x47 && head[188] == 0x47) {
+            return "mpegts";
+        }
+        if (length >= 12 && text.startsWith("RIFF") && text.startsWith("AVI ", 8)) {
+            return "avi";
+        }
+        if (text.startsWith("FLV")) {
+            return "flv";
+        }
+        if (contentType != null) {
+            String type = contentType.toLowerCase();
+            if (type.contains("mpegurl")) {
+                return "hls";
+            }
+            if (type.contains("dash+xml")) {
+                return "dash";
+            }
+            if (type.contains("text/html")) {
+                // Error or landing page served with a 200
+                return "html";
+            }
+        }
+        return CONTAINER_UNKNOWN;
+    }
+
+    private static long parseTotalLength(Response response) {
+        String contentRange = response.header("Content-Range");
+        if (contentRange != null) {
+            int slash = contentRange.lastIndexOf('/');
+            if (slash >= 0 && !contentRange.endsWith("*")) {
+                try {
+                    return Long.parseLong(contentRange.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        ResponseBody body = response.body();
+        return response.code() == 200 && body != null ? body.contentLength() : -1;
+    }
+
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "StreamProber");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,88 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.os.Handler;
+import android.os.Looper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Picks the stream to start on from an ordered candidate list: the top {@link #RACE_SIZE}
+ * candidates are probed in parallel and the first one to deliver a sustained read wins, so a
+ * slow or dead host at the top of the list no longer means an endless spinner. Losing probes
+ * are cancelled as soon as there is a winner. The probes run on StreamProber's pool and report
+ * back themselves, so no thread sits waiting for the outcome.
+ */
+public final class StreamRace {
+    private static final int RACE_SIZE = 3;
+    private static final int PROBE_BYTES = StreamProber.DEFAULT_PROBE_BYTES;
+    private static final long RACE_TIMEOUT_MS = 8000;
+
+    public interface Callback {
+        /**
+         * Called once on the main thread with the index of the winning candidate, or 0 if nobody
+         * delivered in time (playback then starts on the first candidate and fails over from there).
+         */
+        void onFinished(int winner);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<StreamProber.Probe> probes = new ArrayList<>();
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final Callback callback;
+    private int remaining;
+    private boolean finished;
+
+    private StreamRace(Callback callback) {
+        this.callback = callback;
+    }
+
+    /** Starts a race; returns at once. */
+    public static void race(List<StreamCandidate> candidates, Callback callback) {
+        StreamRace race = new StreamRace(callback);
+        int size = Math.min(RACE_SIZE, candidates.size());
+        if (size <= 1) {
+            race.finish(0);
+            return;
+        }
+        synchronized (race) {
+            race.remaining = size;
+            for (int i = 0; i < size; i++) {
+                final int index = i;
+                StreamProber.Probe probe = new StreamProber.Probe(candidates.get(i), PROBE_BYTES, RACE_TIMEOUT_MS);
+                race.probes.add(probe);
+                race.futures.add(StreamProber.getExecutor().submit(() -> {
+                    StreamProber.Result result = probe.run();
+                    // A short read means the host stalled or the file is tiny; neither is a good start
+                    race.report(result.ok && result.bytesRead >= PROBE_BYTES ? index : -1);
+                }));
+            }
+        }
+        race.handler.postDelayed(() -> race.finish(0), RACE_TIMEOUT_MS);
+    }
+
+    private synchronized void report(int index) {
+        remaining--;
+        if (index >= 0) {
+            finish(index);
+        } else if (remaining == 0) {
+            finish(0);
+        }
+    }
+
+    private synchronized void finish(int winner) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        handler.removeCallbacksAndMessages(null);
+        for (StreamProber.Probe probe : probes) {
+            probe.cancel();
+        }
+        // Drops probes still queued; running ones stop with their cancelled calls
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+        handler.post(() -> callback.onFinished(winner));
+    }
+}
@@ -0,0 +1,235 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import com.google.android.exoplayer2.MediaItem.SubtitleConfiguration;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Looks up subtitles for the playing title from Stremio subtitle addons
+ * ({@code {addon}/subtitles/{type}/{id}.json}). Each addon URL is requested at most once per
+ * fetcher; requests run on a small pool with a hard call timeout and are cancelled with
+ * {@link #cancel()}, which the activity calls from onDestroy. The results of one fetch() are
+ * collected and delivered together, so the caller rebuilds its MediaItem at most once for them.
+ */
+public class SubtitleAddonFetcher {
+    private static final int MAX_THREADS = 3;
+    private static final long CALL_TIMEOUT_MS = 10000;
+
+    public interface Callback {
+        /**
+         * Called once on the main thread, after every addon one fetch() queried has answered, with
+         * all the subtitles they returned. Not called when none were found.
+         */
+        void onSubtitlesFound(List<SubtitleConfiguration> subtitles);
+    }
+
+    /** The addon requests started by one fetch(); main thread only. */
+    private static final class Round {
+        final List<SubtitleConfiguration> found = new ArrayList<>();
+        int pending;
+    }
+
+    /** What to look up: addon base URLs plus the Stremio type and id of the title. */
+    public static final class Lookup {
+        public final List<String> addons;
+        public final String type;
+        public final String id;
+
+        Lookup(List<String> addons, String type, String id) {
+            // Unmodifiable so the hash of a lookup used as a key never changes
+            this.addons = Collections.unmodifiableList(new ArrayList<>(addons));
+            this.type = type;
+            this.id = id;
+        }
+
+        /** Parses the play() option; returns null when it is missing or incomplete. */
+        public static Lookup fromJson(JSONObject object) {
+            if (object == null) {
+                return null;
+            }
+            try {
+                String type = object.optString("type", null);
+                String id = object.optString("id", null);
+                JSONArray addonsArray = object.optJSONArray("addons");
+                if (type == null || id == null || addonsArray == null || addonsArray.length() == 0) {
+                    return null;
+                }
+                List<String> addons = new ArrayList<>();
+                for (int i = 0; i < addonsArray.length(); i++) {
+                    String addon = addonsArray.getString(i);
+                    // Accept either the manifest URL or the base URL
+                    addons.add(addon.replaceAll("/manifest\\.json$", "").replaceAll("/+$", ""));
+                }
+                return new Lookup(addons, type, id);
+            } catch (Exception e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Lookup)) {
+                return false;
+            }
+            Lookup lookup = (Lookup) other;
+            return type.equals(lookup.type) && id.equals(lookup.id) && addons.equals(lookup.addons);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, id, addons);
+        }
+    }
+
+    private final OkHttpClient client;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Set<String> requestedUrls = new HashSet<>();
+    private final Map<Lookup, List<SubtitleConfiguration>> foundByLookup = new HashMap<>();
+    private final Set<Call> calls = new HashSet<>();
+    private volatile boolean cancelled = false;
+
+    public SubtitleAddonFetcher() {
+        // Same connection pool and TLS sessions as playback, with a per-call deadline on top
+        client = PlayerNetwork.getHttpClient().newBuilder()
+            .callTimeout(CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build();
+        // Unbounded queue: every requested URL has to run, or it would never be asked again
+        executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queries every addon in the lookup that has not been queried yet and reports what they found
+     * through one callback once they have all answered. Main thread only.
+     */
+    public void fetch(Lookup lookup, Callback callback) {
+        if (lookup == null || cancelled) {
+            return;
+        }
+        List<String> urls = new ArrayList<>();
+        for (String addon : lookup.addons) {
+            String url = addon + "/subtitles/" + Uri.encode(lookup.type) + "/" + Uri.encode(lookup.id, ":") + ".json";
+            if (requestedUrls.add(url)) {
+                urls.add(url);
+            }
+        }
+        if (urls.isEmpty()) {
+            return;
+        }
+        Round round = new Round();
+        round.pending = urls.size();
+        for (String url : urls) {
+            executor.execute(() -> {
+                List<SubtitleConfiguration> subtitles = request(url);
+                mainHandler.post(() -> {
+                    if (cancelled) {
+                        return;
+                    }
+                    round.found.addAll(subtitles);
+                    List<SubtitleConfiguration> found = foundByLookup.get(lookup);
+                    if (found == null) {
+                        found = new ArrayList<>();
+                        foundByLookup.put(lookup, found);
+                    }
+                    found.addAll(subtitles);
+                    if (--round.pending == 0 && !round.found.isEmpty()) {
+                        callback.onSubtitlesFound(round.found);
+                    }
+                });
+            });
+        }
+    }
+
+    /**
+     * Everything found for {@code lookup} so far, including answers from fetches that are still
+     * waiting on slower addons. Main thread only.
+     */
+    public List<SubtitleConfiguration> getFound(Lookup lookup) {
+        List<SubtitleConfiguration> found = foundByLookup.get(lookup);
+        return found != null ? new ArrayList<>(found) : Collections.emptyList();
+    }
+
+    public void cancel() {
+        cancelled = true;
+        executor.shutdownNow();
+        synchronized (calls) {
+            for (Call call : calls) {
+                call.cancel();
+            }
+            calls.clear();
+        }
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    private List<SubtitleConfiguration> request(String url) {
+        List<SubtitleConfiguration> subtitles = new ArrayList<>();
+        Call call = client.newCall(new Request.Builder().url(url).build());
+        synchronized (calls) {
+            if (cancelled) {
+                return subtitles;
+            }
+            calls.add(call);
+        }
+        boolean traced = false;
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                return subtitles;
+            }
+            String body = response.body().string();
+            traced = PlayerTrace.begin("SubtitleAddonFetcher.parse");
+            JSONArray results = new JSONObject(body).optJSONArray("subtitles");
+            if (results == null) {
+                return subtitles;
+            }
+            for (int i = 0; i < results.length(); i++) {
+                JSONObject result = results.getJSONObject(i);
+                String subtitleUrl = result.optString("url", null);
+                if (subtitleUrl == null || subtitleUrl.isEmpty()) {
+                    continue;
+                }
+                String language = result.optString("lang", null);
+                subtitles.add(new SubtitleConfiguration.Builder(Uri.parse(subtitleUrl))
+                    .setMimeType(MimeTypes.TEXT_VTT) // SubtitlePipeline converts every format to VTT
+                    .setLanguage(language)
+                    .setLabel(language)
+                    .setId(result.optString("id", subtitleUrl))
+                    .build());
+            }
+        } catch (Exception e) {
+            if (!cancelled) {
+                e.printStackTrace();
+            }
+        } finally {
+            PlayerTrace.end(traced);
+            synchronized (calls) {
+                calls.remove(call);
+            }
+        }
+        return subtitles;
+    }
+}
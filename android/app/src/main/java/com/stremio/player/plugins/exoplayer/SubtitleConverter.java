@@ -0,0 +1,311 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.util.Xml;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Sniffs the real format of a downloaded subtitle file and rewrites it as WebVTT, one line or
+ * element at a time, so the player can load every external track with a single parser.
+ * Styling beyond basic italics/bold is dropped.
+ */
+public final class SubtitleConverter {
+
+    public enum Format { VTT, SRT, ASS, TTML, UNKNOWN }
+
+    private static final Pattern SRT_TIMING = Pattern.compile(
+        "(\\d+):(\\d{2}):(\\d{2})[,.](\\d{1,3})\\s*-->\\s*(\\d+):(\\d{2}):(\\d{2})[,.](\\d{1,3})");
+    private static final Pattern SRT_FONT_TAG = Pattern.compile("</?font[^>]*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ASS_OVERRIDE = Pattern.compile("\\{[^}]*\\}");
+    private static final Pattern TTML_CLOCK = Pattern.compile("(\\d+):(\\d{2}):(\\d{2})(?:[.](\\d+)|:(\\d+))?");
+    private static final Pattern TTML_OFFSET = Pattern.compile("([\\d.]+)(h|ms|m|s|f|t)");
+
+    private SubtitleConverter() {}
+
+    /** Picks the charset for a file from its first bytes: BOMs first, then strict UTF-8, else Windows-1252. */
+    public static Charset detectCharset(byte[] head, int length) {
+        if (length >= 2 && (head[0] & 0xff) == 0xff && (head[1] & 0xff) == 0xfe) {
+            return StandardCharsets.UTF_16LE;
+        }
+        if (length >= 2 && (head[0] & 0xff) == 0xfe && (head[1] & 0xff) == 0xff) {
+            return StandardCharsets.UTF_16BE;
+        }
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer out = CharBuffer.allocate(length);
+        // endOfInput=false: a multi-byte character cut off by the sniff window is not an error
+        CoderResult result = decoder.decode(ByteBuffer.wrap(head, 0, length), out, false);
+        return result.isError() ? Charset.forName("windows-1252") : StandardCharsets.UTF_8;
+    }
+
+    public static Format sniff(String head) {
+        String text = stripBom(head).trim();
+        if (text.startsWith("WEBVTT")) {
+            return Format.VTT;
+        }
+        if (text.contains("[Script Info]") || text.contains("[Events]") || text.contains("[V4+ Styles]")
+                || text.contains("[V4 Styles]")) {
+            return Format.ASS;
+        }
+        if (text.startsWith("<?xml") || text.startsWith("<tt") || text.contains("<tt ")) {
+            return Format.TTML;
+        }
+        if (SRT_TIMING.matcher(text).find()) {
+            return Format.SRT;
+        }
+        return Format.UNKNOWN;
+    }
+
+    public static void convert(Format format, Reader input, Writer output) throws IOException {
+        switch (format) {
+            case VTT:
+                copy(new BufferedReader(input), output);
+                break;
+            case SRT:
+                convertSrt(new BufferedReader(input), output);
+                break;
+            case ASS:
+                convertAss(new BufferedReader(input), output);
+                break;
+            case TTML:
+                convertTtml(input, output);
+                break;
+            default:
+                throw new IOException("Unrecognised subtitle format");
+        }
+    }
+
+    private static void copy(BufferedReader reader, Writer output) throws IOException {
+        String line;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            output.write(first ? stripBom(line) : line);
+            output.write('\n');
+            first = false;
+        }
+    }
+
+    private static void convertSrt(BufferedReader reader, Writer output) throws IOException {
+        output.write("WEBVTT\n\n");
+        String line;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            if (first) {
+                line = stripBom(line);
+                first = false;
+            }
+            Matcher timing = SRT_TIMING.matcher(line);
+            if (timing.find()) {
+                output.write(formatTimestamp(clockToMs(timing.group(1), timing.group(2), timing.group(3), timing.group(4))));
+                output.write(" --> ");
+                output.write(formatTimestamp(clockToMs(timing.group(5), timing.group(6), timing.group(7), timing.group(8))));
+            } else {
+                // <i>/<b>/<u> are valid WebVTT; <font> is not
+                output.write(SRT_FONT_TAG.matcher(line).replaceAll(""));
+            }
+            output.write('\n');
+        }
+    }
+
+    private static void convertAss(BufferedReader reader, Writer output) throws IOException {
+        output.write("WEBVTT\n\n");
+        boolean inEvents = false;
+        int startField = 1;
+        int endField = 2;
+        int textField = 9;
+        int fieldCount = 10;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = stripBom(line).trim();
+            if (line.startsWith("[")) {
+                inEvents = line.equalsIgnoreCase("[Events]");
+                continue;
+            }
+            if (!inEvents) {
+                continue;
+            }
+            if (line.startsWith("Format:")) {
+                String[] fields = line.substring("Format:".length()).split(",");
+                fieldCount = fields.length;
+                for (int i = 0; i < fields.length; i++) {
+                    String field = fields[i].trim().toLowerCase(Locale.ROOT);
+                    if (field.equals("start")) {
+                        startField = i;
+                    } else if (field.equals("end")) {
+                        endField = i;
+                    } else if (field.equals("text")) {
+                        textField = i;
+                    }
+                }
+            } else if (line.startsWith("Dialogue:")) {
+                // Text is the last field and may itself contain commas
+                String[] values = line.substring("Dialogue:".length()).split(",", fieldCount);
+                if (values.length <= Math.max(textField, Math.max(startField, endField))) {
+                    continue;
+                }
+                String text = ASS_OVERRIDE.matcher(values[textField]).replaceAll("")
+                    .replace("\\N", "\n").replace("\\n", "\n").replace("\\h", " ").trim();
+                if (text.isEmpty()) {
+                    continue;
+                }
+                output.write(formatTimestamp(parseAssTime(values[startField].trim())));
+                output.write(" --> ");
+                output.write(formatTimestamp(parseAssTime(values[endField].trim())));
+                output.write('\n');
+                output.write(escapeCueText(text));
+                output.write("\n\n");
+            }
+        }
+    }
+
+    private static void convertTtml(Reader input, Writer output) throws IOException {
+        output.write("WEBVTT\n\n");
+        try {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+            parser.setInput(input);
+
+            float frameRate = 30;
+            float tickRate = 1;
+            long beginMs = -1;
+            long endMs = -1;
+            StringBuilder text = null;
+            int event = parser.getEventType();
+            while (event != XmlPullParser.END_DOCUMENT) {
+                String name = event == XmlPullParser.START_TAG || event == XmlPullParser.END_TAG
+                    ? localName(parser.getName()) : null;
+                if (event == XmlPullParser.START_TAG && "tt".equals(name)) {
+                    frameRate = parseFloat(attribute(parser, "frameRate"), frameRate);
+                    tickRate = parseFloat(attribute(parser, "tickRate"), tickRate);
+                } else if (event == XmlPullParser.START_TAG && "p".equals(name)) {
+                    beginMs = parseTtmlTime(attribute(parser, "begin"), frameRate, tickRate);
+                    endMs = parseTtmlTime(attribute(parser, "end"), frameRate, tickRate);
+                    long durationMs = parseTtmlTime(attribute(parser, "dur"), frameRate, tickRate);
+                    if (endMs < 0 && beginMs >= 0 && durationMs >= 0) {
+                        endMs = beginMs + durationMs;
+                    }
+                    text = new StringBuilder();
+                } else if (event == XmlPullParser.START_TAG && "br".equals(name) && text != null) {
+                    text.append('\n');
+                } else if (event == XmlPullParser.TEXT && text != null) {
+                    text.append(parser.getText().replaceAll("\\s+", " "));
+                } else if (event == XmlPullParser.END_TAG && "p".equals(name) && text != null) {
+                    String cue = text.toString().trim();
+                    if (beginMs >= 0 && endMs > beginMs && !cue.isEmpty()) {
+                        output.write(formatTimestamp(beginMs));
+                        output.write(" --> ");
+                        output.write(formatTimestamp(endMs));
+                        output.write('\n');
+                        output.write(escapeCueText(cue));
+                        output.write("\n\n");
+                    }
+                    text = null;
+                }
+                event = parser.next();
+            }
+        } catch (XmlPullParserException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String attribute(XmlPullParser parser, String name) {
+        // Namespaces are not processed, so match "ttp:frameRate" as well as "frameRate"
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            if (localName(parser.getAttributeName(i)).equals(name)) {
+                return parser.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private static String localName(String name) {
+        int colon = name.indexOf(':');
+        return colon >= 0 ? name.substring(colon + 1) : name;
+    }
+
+    private static float parseFloat(String value, float fallback) {
+        try {
+            return value != null ? Float.parseFloat(value) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static long parseTtmlTime(String value, float frameRate, float tickRate) {
+        if (value == null) {
+            return -1;
+        }
+        value = value.trim();
+        Matcher clock = TTML_CLOCK.matcher(value);
+        if (clock.matches()) {
+            long ms = (Long.parseLong(clock.group(1)) * 3600 + Long.parseLong(clock.group(2)) * 60
+                + Long.parseLong(clock.group(3))) * 1000;
+            if (clock.group(4) != null) {
+                ms += (long) (Double.parseDouble("0." + clock.group(4)) * 1000);
+            } else if (clock.group(5) != null) {
+                ms += (long) (Long.parseLong(clock.group(5)) * 1000 / frameRate);
+            }
+            return ms;
+        }
+        Matcher offset = TTML_OFFSET.matcher(value);
+        if (offset.matches()) {
+            double amount = Double.parseDouble(offset.group(1));
+            switch (offset.group(2)) {
+                case "h": return (long) (amount * 3600000);
+                case "m": return (long) (amount * 60000);
+                case "s": return (long) (amount * 1000);
+                case "ms": return (long) amount;
+                case "f": return (long) (amount * 1000 / frameRate);
+                case "t": return (long) (amount * 1000 / tickRate);
+                default: return -1;
+            }
+        }
+        return -1;
+    }
+
+    /** ASS times are H:MM:SS.cc (centiseconds). */
+    private static long parseAssTime(String value) {
+        String[] parts = value.split("[:.]");
+        if (parts.length < 3) {
+            return 0;
+        }
+        return clockToMs(parts[0], parts[1], parts[2], parts.length > 3 ? parts[3] : "0");
+    }
+
+    /** The fraction is read as a decimal fraction, so "5" is 500 ms and "05" is 50 ms. */
+    private static long clockToMs(String hours, String minutes, String seconds, String fraction) {
+        long ms = (Long.parseLong(hours) * 3600 + Long.parseLong(minutes) * 60 + Long.parseLong(seconds)) * 1000;
+        String millis = (fraction + "00").substring(0, 3);
+        return ms + Long.parseLong(millis);
+    }
+
+    private static String formatTimestamp(long ms) {
+        return String.format(Locale.US, "%02d:%02d:%02d.%03d",
+            ms / 3600000, (ms / 60000) % 60, (ms / 1000) % 60, ms % 1000);
+    }
+
+    private static String escapeCueText(String text) {
+        // A blank line would end the cue early
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+            .replaceAll("\n\\s*\n", "\n");
+    }
+
+    private static String stripBom(String text) {
+        return text.startsWith("\uFEFF") ? text.substring(1) : text;
+    }
+}
@@ -0,0 +1,191 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import com.google.android.exoplayer2.MediaItem.SubtitleConfiguration;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.ResolvingDataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads every external subtitle in parallel while the video prepares, converts it to
+ * WebVTT and keeps the result on disk keyed by URL hash. The player's data source resolves
+ * subtitle URLs to those files, so every track loads locally and selecting one never waits
+ * on the network. The MediaItem keeps tagging tracks as TEXT_VTT, which is now accurate.
+ * The stream's headers are only sent to subtitles on the stream's own origin.
+ */
+public final class SubtitlePipeline {
+    private static final String CACHE_DIR = "exoplayer-subtitles";
+    private static final int MAX_PARALLEL_DOWNLOADS = 4;
+    private static final int MAX_CACHED_FILES = 200;
+    private static final int SNIFF_BYTES = 8 * 1024;
+    private static final long AWAIT_TIMEOUT_MS = 20000;
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(MAX_PARALLEL_DOWNLOADS, runnable -> {
+        Thread thread = new Thread(runnable, "SubtitlePipeline");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    // Downloads in flight; each removes itself once it finishes
+    private static final Map<String, Future<File>> downloads = new ConcurrentHashMap<>();
+    // Converted files by URL, least recently used first, bounded like the directory itself
+    private static final Map<String, File> converted = Collections.synchronizedMap(
+        new LinkedHashMap<String, File>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, File> eldest) {
+                return size() > MAX_CACHED_FILES;
+            }
+        });
+
+    private SubtitlePipeline() {}
+
+    /**
+     * Starts fetching and converting every subtitle that is not already on disk. {@code headers}
+     * belong to the stream at {@code streamUrl} and only go to subtitles on the same origin.
+     */
+    public static void prefetch(Context context, String streamUrl, Map<String, String> headers,
+                                List<SubtitleConfiguration> subtitleConfigurations) {
+        if (subtitleConfigurations == null || subtitleConfigurations.isEmpty()) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        for (SubtitleConfiguration config : subtitleConfigurations) {
+            String url = config.uri.toString();
+            File file = converted.get(url);
+            if (file != null && file.exists()) {
+                continue;
+            }
+            downloads.computeIfAbsent(url,
+                key -> executor.submit(() -> download(appContext, streamUrl, headers, key)));
+        }
+        executor.execute(() -> trimCache(appContext));
+    }
+
+    /**
+     * Wraps the player's factory so subtitle URLs read from the converted file. A load that
+     * starts before its download finishes waits for it on the loader thread; if the download
+     * fails the original URL is used.
+     */
+    public static DataSource.Factory wrap(DataSource.Factory upstreamFactory) {
+        return new ResolvingDataSource.Factory(upstreamFactory, dataSpec -> {
+            File file = getConvertedFile(dataSpec.uri.toString());
+            return file != null ? dataSpec.withUri(Uri.fromFile(file)) : dataSpec;
+        });
+    }
+
+    private static File getConvertedFile(String url) {
+        File file = converted.get(url);
+        if (file != null && file.exists()) {
+            return file;
+        }
+        // Every other request (media, playlists, keys) is not ours and passes straight through
+        Future<File> download = downloads.get(url);
+        if (download == null) {
+            return null;
+        }
+        try {
+            file = download.get(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (file.exists()) {
+                return file;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private static File download(Context context, String streamUrl, Map<String, String> headers, String url)
+            throws IOException {
+        try {
+            File file = fetch(context, streamUrl, headers, url);
+            converted.put(url, file);
+            return file;
+        } finally {
+            // A failed download is retried by the next prefetch
+            downloads.remove(url);
+        }
+    }
+
+    private static File fetch(Context context, String streamUrl, Map<String, String> headers, String url)
+            throws IOException {
+        File target = cacheFile(context, url);
+        if (target.exists()) {
+            target.setLastModified(System.currentTimeMillis());
+            return target;
+        }
+
+        File temp = new File(target.getPath() + ".tmp");
+        DataSource dataSource = StreamHeaders.forStream(streamUrl, headers)
+            .wrap(PlayerNetwork.createDataSourceFactory(context, null))
+            .createDataSource();
+        try (InputStream input = new BufferedInputStream(
+                 new DataSourceInputStream(dataSource, new DataSpec(Uri.parse(url))), SNIFF_BYTES);
+             Writer output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            // Sniff charset and format from the head of the stream, then convert it as it arrives
+            input.mark(SNIFF_BYTES);
+            byte[] head = new byte[SNIFF_BYTES];
+            int length = 0;
+            int read;
+            while (length < head.length && (read = input.read(head, length, head.length - length)) != -1) {
+                length += read;
+            }
+            input.reset();
+
+            Charset charset = SubtitleConverter.detectCharset(head, length);
+            SubtitleConverter.Format format = SubtitleConverter.sniff(new String(head, 0, length, charset));
+            boolean traced = PlayerTrace.begin("SubtitlePipeline.convert");
+            try {
+                SubtitleConverter.convert(format, new InputStreamReader(input, charset), output);
+            } finally {
+                PlayerTrace.end(traced);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Could not store converted subtitle");
+        }
+        return target;
+    }
+
+    private static File cacheFile(Context context, String url) {
+        File directory = new File(context.getCacheDir(), CACHE_DIR);
+        directory.mkdirs();
+        return new File(directory, PlayerCache.sha1Hex(url) + ".vtt");
+    }
+
+    private static void trimCache(Context context) {
+        File[] files = new File(context.getCacheDir(), CACHE_DIR).listFiles();
+        if (files == null || files.length <= MAX_CACHED_FILES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        for (int i = MAX_CACHED_FILES; i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent thumbnail sheet for one title. Compressed tiles are appended to a single sheet
+ * file and located through a fixed-size index (offset and length per thumbnail slot); both are
+ * memory-mapped, so re-opening a title serves previews straight from the page cache.
+ * The directory is keyed on the stream URL without volatile tokens plus the duration and tile
+ * geometry. Safe to use from the extractor workers and the main thread. One instance is shared
+ * per directory for the whole process, so an extractor that is still winding down and its
+ * replacement append through the same sheet length instead of at overlapping offsets.
+ */
+public class ThumbnailDiskCache {
+    private static final String CACHE_DIR = "exoplayer-thumbnails";
+    private static final String INDEX_FILE = "index";
+    private static final String SHEET_FILE = "sheet";
+    private static final long MAX_TOTAL_BYTES = 64L * 1024 * 1024;
+    private static final int MAGIC = 0x54484d42; // "THMB"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24; // magic, version, interval, width, height, count
+    private static final int ENTRY_BYTES = 8;   // offset, length
+
+    // Open sheets by directory, released when the last holder closes them
+    private static final Map<File, ThumbnailDiskCache> open = new HashMap<>();
+
+    private final File directory;
+    private final int thumbCount;
+    private final RandomAccessFile indexFile;
+    private final RandomAccessFile sheetFile;
+    private final MappedByteBuffer index;
+    private MappedByteBuffer sheet;
+    private long sheetLength;
+    private int refs;
+
+    private ThumbnailDiskCache(File directory, int intervalMs, int width, int height, int thumbCount)
+            throws IOException {
+        this.directory = directory;
+        this.thumbCount = thumbCount;
+        indexFile = new RandomAccessFile(new File(directory, INDEX_FILE), "rw");
+        sheetFile = new RandomAccessFile(new File(directory, SHEET_FILE), "rw");
+
+        long indexBytes = HEADER_BYTES + (long) thumbCount * ENTRY_BYTES;
+        boolean valid = indexFile.length() == indexBytes;
+        index = indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, indexBytes);
+        valid = valid
+            && index.getInt(0) == MAGIC && index.getInt(4) == VERSION
+            && index.getInt(8) == intervalMs && index.getInt(12) == width
+            && index.getInt(16) == height && index.getInt(20) == thumbCount;
+        if (!valid) {
+            // Fresh or incompatible layout: start an empty sheet
+            sheetFile.setLength(0);
+            for (int i = 0; i < indexBytes; i++) {
+                index.put(i, (byte) 0);
+            }
+            index.putInt(0, MAGIC);
+            index.putInt(4, VERSION);
+            index.putInt(8, intervalMs);
+            index.putInt(12, width);
+            index.putInt(16, height);
+            index.putInt(20, thumbCount);
+        }
+        sheetLength = sheetFile.length();
+        sheet = sheetFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, sheetLength);
+        directory.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Opens the sheet for a stream, or returns null if the disk is unusable. Every successful
+     * call must be balanced by one {@link #close()}.
+     */
+    public static ThumbnailDiskCache open(Context context, String url, long durationMs,
+                                          int intervalMs, int width, int height, int thumbCount) {
+        try {
+            File root = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR);
+            String identity = PlayerCache.buildCacheKey(Uri.parse(url)) + "|" + durationMs
+                + "|" + intervalMs + "|" + width + "x" + height;
+            File directory = new File(root, PlayerCache.sha1Hex(identity));
+            synchronized (open) {
+                ThumbnailDiskCache cache = open.get(directory);
+                if (cache == null) {
+                    if (!directory.isDirectory() && !directory.mkdirs()) {
+                        return null;
+                    }
+                    trimOthers(root, directory);
+                    cache = new ThumbnailDiskCache(directory, intervalMs, width, height, thumbCount);
+                    open.put(directory, cache);
+                }
+                cache.refs++;
+                return cache;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public synchronized boolean contains(int position) {
+        return position >= 0 && position < thumbCount && index.getInt(entryOffset(position) + 4) > 0;
+    }
+
+    public synchronized byte[] read(int position) {
+        if (!contains(position)) {
+            return null;
+        }
+        int offset = index.getInt(entryOffset(position));
+        int length = index.getInt(entryOffset(position) + 4);
+        byte[] jpeg = new byte[length];
+        try {
+            if ((long) offset + length > sheet.capacity()) {
+                // Appended after the sheet was mapped; remap to cover it
+                sheet = sheetFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, sheetLength);
+            }
+            ByteBuffer view = sheet.duplicate();
+            view.position(offset);
+            view.get(jpeg);
+            return jpeg;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public synchronized void write(int position, byte[] jpeg) {
+        if (position < 0 || position >= thumbCount || contains(position)) {
+            return;
+        }
+        try {
+            long offset = sheetLength;
+            sheetFile.getChannel().write(ByteBuffer.wrap(jpeg), offset);
+            sheetLength += jpeg.length;
+            // Length goes in last; a zero length marks the slot as empty if we die mid-write
+            index.putInt(entryOffset(position), (int) offset);
+            index.putInt(entryOffset(position) + 4, jpeg.length);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Releases one holder; the files are closed once nobody holds the sheet any more. */
+    public void close() {
+        synchronized (open) {
+            if (refs == 0 || --refs > 0) {
+                return;
+            }
+            open.remove(directory);
+        }
+        synchronized (this) {
+            closeFiles();
+        }
+    }
+
+    private void closeFiles() {
+        try {
+            index.force();
+            indexFile.close();
+            sheetFile.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static int entryOffset(int position) {
+        return HEADER_BYTES + position * ENTRY_BYTES;
+    }
+
+    /**
+     * Drops the least recently opened sheets once the thumbnail cache exceeds its budget.
+     * Called with the {@code open} lock held.
+     */
+    private static void trimOthers(File root, File keep) {
+        File[] directories = root.listFiles(File::isDirectory);
+        if (directories == null) {
+            return;
+        }
+        Arrays.sort(directories, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        long total = 0;
+        for (File directory : directories) {
+            long size = 0;
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    size += file.length();
+                }
+            }
+            total += size;
+            // Sheets still held by an extractor are never pulled out from under it
+            if (total > MAX_TOTAL_BYTES && !directory.equals(keep) && !open.containsKey(directory)
+                    && files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+                directory.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import com.google.android.exoplayer2.upstream.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts scrub-preview thumbnails on demand, nearest to the current scrub position first.
+ * Frames come from the stream's trickplay track when TrickplayDetector finds one; otherwise each
+ * worker decodes keyframes through its own DecodingThumbnailSource. Moving the scrub position drops
+ * every request that has not started yet, so the finger never waits behind stale work.
+ * Thumbnails are delivered JPEG-compressed so callers never hold full bitmaps per position.
+ * With a {@link ThumbnailDiskCache} attached, cached tiles are served without touching the
+ * stream and new ones are persisted; the extractor closes the disk cache once released.
+ */
+public class ThumbnailExtractor {
+    private static final int POOL_SIZE = 2;
+    private static final int PREFETCH_RADIUS = 6; // thumbnails on each side of the scrub position
+    private static final int JPEG_QUALITY = 75;
+
+    public interface Callback {
+        /** Called on the main thread. */
+        void onThumbnailReady(int index, byte[] jpeg);
+    }
+
+    private final Context context;
+    private final String url;
+    private final String trickplayUrl;
+    private final Map<String, String> headers;
+    private final int intervalMs;
+    private final int thumbCount;
+    private final int width;
+    private final int height;
+    private final Callback callback;
+    private final ThumbnailDiskCache diskCache;
+    private final AtomicInteger liveWorkers = new AtomicInteger(POOL_SIZE);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Object lock = new Object();
+    private final Set<Integer> pending = new LinkedHashSet<>();
+    private final BitSet requested = new BitSet();
+    private int targetIndex = 0;
+    private boolean released = false;
+
+    private final Object trickplayLock = new Object();
+    private boolean trickplayResolved = false;
+    private ThumbnailSource trickplaySource;
+
+    public ThumbnailExtractor(Context context, String url, String trickplayUrl, Map<String, String> headers,
+                              long durationMs, int intervalMs, int width, int height,
+                              ThumbnailDiskCache diskCache, Callback callback) {
+        this.context = context.getApplicationContext();
+        this.url = url;
+        this.trickplayUrl = trickplayUrl;
+        this.headers = headers;
+        this.intervalMs = intervalMs;
+        this.thumbCount = (int) (durationMs / intervalMs) + 1;
+        this.width = width;
+        this.height = height;
+        this.callback = callback;
+        this.diskCache = diskCache;
+
+        for (int i = 0; i < POOL_SIZE; i++) {
+            Thread worker = new Thread(this::runWorker, "ThumbnailExtractor-" + i);
+            worker.setPriority(Thread.MIN_PRIORITY);
+            worker.start();
+        }
+    }
+
+    public int getThumbCount() {
+        return thumbCount;
+    }
+
+    public int indexFor(long positionMs) {
+        return (int) Math.max(0, Math.min(thumbCount - 1, positionMs / intervalMs));
+    }
+
+    /** Re-targets extraction around {@code positionMs}; anything queued but not started is cancelled. */
+    public void requestAround(long positionMs) {
+        int center = indexFor(positionMs);
+        synchronized (lock) {
+            targetIndex = center;
+            pending.clear();
+            for (int offset = 0; offset <= PREFETCH_RADIUS; offset++) {
+                enqueueLocked(center + offset);
+                enqueueLocked(center - offset);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /** Allows an index to be extracted again, e.g. after its thumbnail was evicted. */
+    public void forget(int index) {
+        synchronized (lock) {
+            requested.clear(index);
+        }
+    }
+
+    public void release() {
+        synchronized (lock) {
+            released = true;
+            pending.clear();
+            lock.notifyAll();
+        }
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    private void enqueueLocked(int index) {
+        if (index >= 0 && index < thumbCount && !requested.get(index)) {
+            pending.add(index);
+        }
+    }
+
+    /** Blocks until there is work; returns the pending index closest to the scrub position, or -1 once released. */
+    private int takeNext() throws InterruptedException {
+        synchronized (lock) {
+            while (!released && pending.isEmpty()) {
+                lock.wait();
+            }
+            if (released) {
+                return -1;
+            }
+            int best = -1;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int index : pending) {
+                int distance = Math.abs(index - targetIndex);
+                if (distance < bestDistance) {
+                    best = index;
+                    bestDistance = distance;
+                }
+            }
+            pending.remove(best);
+            requested.set(best);
+            return best;
+        }
+    }
+
+    /** Detects the trickplay source once; the first worker to ask does the network probing. */
+    private ThumbnailSource getTrickplaySource(DataSource.Factory dataSourceFactory) {
+        synchronized (trickplayLock) {
+            if (!trickplayResolved) {
+                trickplaySource = TrickplayDetector.detect(dataSourceFactory, url, trickplayUrl);
+                trickplayResolved = true;
+            }
+            return trickplaySource;
+        }
+    }
+
+    private void runWorker() {
+        ThumbnailSource decodingSource = null;
+        try {
+            // The stream's headers go to its origin only; sprite sheets and BIFs often live elsewhere
+            DataSource.Factory dataSourceFactory = StreamHeaders.forStream(url, headers)
+                .wrap(PlayerNetwork.createDataSourceFactory(context, null));
+            int index;
+            while ((index = takeNext()) >= 0) {
+                byte[] jpeg = diskCache != null ? diskCache.read(index) : null;
+                if (jpeg == null) {
+                    ThumbnailSource source = getTrickplaySource(dataSourceFactory);
+                    if (source == null) {
+                        if (decodingSource == null) {
+                            decodingSource = new DecodingThumbnailSource(dataSourceFactory, Uri.parse(url));
+                        }
+                        source = decodingSource;
+                    }
+                    boolean traced = PlayerTrace.begin("ThumbnailExtractor.extract");
+                    try {
+                        Bitmap thumbnail = extract(source, index);
+                        if (thumbnail == null) {
+                            continue;
+                        }
+                        ByteArrayOutputStream output = new ByteArrayOutputStream();
+                        thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, output);
+                        thumbnail.recycle();
+                        jpeg = output.toByteArray();
+                    } finally {
+                        PlayerTrace.end(traced);
+                    }
+                    if (diskCache != null) {
+                        diskCache.write(index, jpeg);
+                    }
+                }
+                final byte[] readyJpeg = jpeg;
+                final int readyIndex = index;
+                mainHandler.post(() -> {
+                    if (!released) {
+                        callback.onThumbnailReady(readyIndex, readyJpeg);
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (decodingSource != null) {
+                decodingSource.release();
+            }
+            if (liveWorkers.decrementAndGet() == 0) {
+                synchronized (trickplayLock) {
+                    if (trickplaySource != null) {
+                        trickplaySource.release();
+                    }
+                }
+                if (diskCache != null) {
+                    diskCache.close();
+                }
+            }
+        }
+    }
+
+    private Bitmap extract(ThumbnailSource source, int index) {
+        long positionMs = index * (long) intervalMs;
+        try {
+            Bitmap frame = source.getFrame(positionMs, width, height);
+            if (frame == null || (frame.getWidth() <= width && frame.getHeight() <= height)) {
+                return frame;
+            }
+            // Fit inside the thumbnail box; trickplay tiles do not always share the video's aspect
+            float scale = Math.min((float) width / frame.getWidth(), (float) height / frame.getHeight());
+            Bitmap scaled = Bitmap.createScaledBitmap(frame,
+                Math.max(1, Math.round(frame.getWidth() * scale)),
+                Math.max(1, Math.round(frame.getHeight() * scale)), true);
+            if (scaled != frame) {
+                frame.recycle();
+            }
+            return scaled;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.graphics.Bitmap;
+
+/**
+ * Where ThumbnailExtractor gets preview frames from: a trickplay track published alongside the
+ * stream, or decoding the stream itself as the last resort.
+ */
+public interface ThumbnailSource {
+    /** Returns a frame at or near {@code positionMs}, or null if there is none. Blocking. */
+    Bitmap getFrame(long positionMs, int width, int height) throws Exception;
+
+    void release();
+}
@@ -0,0 +1,138 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Byte-budgeted store for scrub-preview thumbnails. Thumbnails are kept as compressed JPEG
+ * bytes, so memory depends on the budget rather than the length of the title; when the budget
+ * is exceeded the thumbnails furthest from the current focus are dropped first.
+ * Decoding reuses two RGB_565 bitmaps in turn, one on screen and one being filled.
+ * All methods must be called on the main thread.
+ */
+public class ThumbnailStore {
+
+    public interface EvictionListener {
+        void onEvicted(int index);
+    }
+
+    private final Map<Integer, byte[]> entries = new HashMap<>();
+    private final int maxBytes;
+    private final EvictionListener evictionListener;
+    private final Bitmap[] decodePool = new Bitmap[2];
+    private int nextPoolSlot = 0;
+    private int budgetBytes;
+    private int sizeBytes = 0;
+    private int focusIndex = 0;
+
+    public ThumbnailStore(int maxBytes, EvictionListener evictionListener) {
+        this.maxBytes = maxBytes;
+        this.budgetBytes = maxBytes;
+        this.evictionListener = evictionListener;
+    }
+
+    public void put(int index, byte[] jpeg) {
+        byte[] previous = entries.put(index, jpeg);
+        if (previous != null) {
+            sizeBytes -= previous.length;
+        }
+        sizeBytes += jpeg.length;
+        trimToSize(budgetBytes);
+    }
+
+    public boolean contains(int index) {
+        return entries.containsKey(index);
+    }
+
+    public byte[] getBytes(int index) {
+        return entries.get(index);
+    }
+
+    /** Sets the index eviction distances are measured from, normally the scrub position. */
+    public void setFocus(int index) {
+        focusIndex = index;
+        // Memory pressure is over once the user is scrubbing again
+        budgetBytes = maxBytes;
+    }
+
+    /** Returns the stored index closest to {@code index} within {@code maxDistance}, or -1. */
+    public int findNearest(int index, int maxDistance) {
+        for (int offset = 0; offset <= maxDistance; offset++) {
+            if (entries.containsKey(index + offset)) {
+                return index + offset;
+            }
+            if (entries.containsKey(index - offset)) {
+                return index - offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes a stored thumbnail into the reuse pool. The returned bitmap stays valid until the
+     * next-but-one call, which is long enough to hand it to an ImageView.
+     */
+    public Bitmap decode(int index) {
+        byte[] jpeg = entries.get(index);
+        if (jpeg == null) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        options.inMutable = true;
+        options.inBitmap = decodePool[nextPoolSlot];
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        } catch (IllegalArgumentException e) {
+            // Pooled bitmap cannot hold this image; decode into a fresh one
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        }
+        decodePool[nextPoolSlot] = bitmap;
+        nextPoolSlot = (nextPoolSlot + 1) % decodePool.length;
+        return bitmap;
+    }
+
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            // Nobody can scrub while the UI is hidden
+            budgetBytes = 0;
+            decodePool[0] = null;
+            decodePool[1] = null;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            budgetBytes = maxBytes / 4;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            budgetBytes = maxBytes / 2;
+        }
+        trimToSize(budgetBytes);
+    }
+
+    public void clear() {
+        trimToSize(0);
+        decodePool[0] = null;
+        decodePool[1] = null;
+    }
+
+    private void trimToSize(int targetBytes) {
+        while (sizeBytes > targetBytes && !entries.isEmpty()) {
+            // Drop the thumbnail furthest from where the user is looking
+            int furthest = 0;
+            int furthestDistance = -1;
+            for (int index : entries.keySet()) {
+                int distance = Math.abs(index - focusIndex);
+                if (distance > furthestDistance) {
+                    furthest = index;
+                    furthestDistance = distance;
+                }
+            }
+            sizeBytes -= entries.remove(furthest).length;
+            if (evictionListener != null) {
+                evictionListener.onEvicted(furthest);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.upstream.DataSource;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Picks the cheapest thumbnail source a stream offers: an explicit trickplay URL (BIF or
+ * WebVTT sprite map), then the stream's own HLS I-frame variant. Returns null when there is
+ * none, in which case the caller decodes frames from the stream. Performs network I/O.
+ */
+public final class TrickplayDetector {
+    private static final int SNIFF_BYTES = 16;
+
+    private TrickplayDetector() {}
+
+    public static ThumbnailSource detect(DataSource.Factory dataSourceFactory, String videoUrl, String trickplayUrl) {
+        if (trickplayUrl != null && !trickplayUrl.isEmpty()) {
+            try {
+                ThumbnailSource source = openTrickplayUrl(dataSourceFactory, Uri.parse(trickplayUrl));
+                if (source != null) {
+                    return source;
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        Uri videoUri = Uri.parse(videoUrl);
+        String path = videoUri.getPath();
+        if (path != null && path.toLowerCase(Locale.ROOT).endsWith(".m3u8")) {
+            try {
+                return HlsIFrameThumbnailSource.open(dataSourceFactory, videoUri);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return null;
+    }
+
+    private static ThumbnailSource openTrickplayUrl(DataSource.Factory dataSourceFactory, Uri uri) throws Exception {
+        // Sniff the content rather than trusting the extension; addons serve both from arbitrary paths
+        byte[] head = PlayerNetwork.readBytes(dataSourceFactory, uri, 0, SNIFF_BYTES);
+        if (BifThumbnailSource.hasMagic(ByteBuffer.wrap(head))) {
+            return BifThumbnailSource.open(dataSourceFactory, uri);
+        }
+        String text = new String(head, StandardCharsets.UTF_8);
+        if (text.startsWith("\uFEFF")) {
+            text = text.substring(1);
+        }
+        if (text.startsWith("WEBVTT")) {
+            return SpriteVttThumbnailSource.open(dataSourceFactory, uri);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,326 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.Context;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Where the user stopped watching each title, kept natively so the web app never has to poll
+ * position. Updates are appended to a memory-mapped journal (a plain memory write on the
+ * caller's thread) and flushed to disk in batches; a CRC on every record lets a torn tail from
+ * a crash be dropped on the next open. When the mapping is three quarters full, the live entries
+ * are rewritten into a fresh journal on the background thread while records keep going to the
+ * old one, and the new journal is then swapped in atomically. Opening and replaying happen off
+ * the main thread too, see {@link #warmUp}.
+ */
+public final class WatchProgressJournal {
+    private static final String DIRECTORY = "exoplayer-progress";
+    private static final String JOURNAL_FILE = "journal";
+    private static final int INITIAL_CAPACITY = 256 * 1024;
+    private static final int MAX_ENTRIES = 2000;
+    private static final int MAX_KEY_BYTES = 512;
+    private static final int FIXED_RECORD_BYTES = 4 + 8 + 8 + 8 + 4; // key length, position, duration, time, crc
+    private static final long FLUSH_DELAY_MS = 5000;
+
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "WatchProgressJournal");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private static WatchProgressJournal instance;
+
+    /** Latest known progress for one title. */
+    public static final class Entry {
+        public final String key;
+        public final long positionMs;
+        public final long durationMs;
+        public final long updatedAtMs;
+
+        Entry(String key, long positionMs, long durationMs, long updatedAtMs) {
+            this.key = key;
+            this.positionMs = positionMs;
+            this.durationMs = durationMs;
+            this.updatedAtMs = updatedAtMs;
+        }
+    }
+
+    private final File directory;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private RandomAccessFile file;
+    private MappedByteBuffer journal;
+    private int capacity = INITIAL_CAPACITY;
+    private boolean dirty = false;
+    private boolean flushScheduled = false;
+    // Keys recorded while a compaction runs; they are carried over when it swaps the journal in
+    private Set<String> changedDuringCompaction;
+
+    /** Journal in {@code directory}; the app uses the single instance from {@link #get}. */
+    WatchProgressJournal(File directory) throws IOException {
+        this.directory = directory;
+        open();
+        replay();
+    }
+
+    public static synchronized WatchProgressJournal get(Context context) {
+        if (instance == null) {
+            try {
+                File directory = new File(context.getApplicationContext().getFilesDir(), DIRECTORY);
+                directory.mkdirs();
+                instance = new WatchProgressJournal(directory);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return instance;
+    }
+
+    /** Opens and replays the journal on the background thread, so the first get() doesn't block. */
+    public static void warmUp(Context context) {
+        Context appContext = context.getApplicationContext();
+        flusher.execute(() -> get(appContext));
+    }
+
+    /** Blocks until the background thread has run everything queued so far (compactions, flushes). */
+    static void awaitBackgroundWork() throws Exception {
+        flusher.submit(() -> {}).get();
+    }
+
+    public synchronized Entry getEntry(String key) {
+        return entries.get(key);
+    }
+
+    /** Progress for the given keys, or for every title when keys is null; newest first. */
+    public synchronized List<Entry> query(List<String> keys) {
+        List<Entry> result = new ArrayList<>();
+        if (keys == null) {
+            result.addAll(entries.values());
+        } else {
+            for (String key : keys) {
+                Entry entry = entries.get(key);
+                if (entry != null) {
+                    result.add(entry);
+                }
+            }
+        }
+        Collections.sort(result, (a, b) -> Long.compare(b.updatedAtMs, a.updatedAtMs));
+        return result;
+    }
+
+    /** Records a position; the disk write is batched with others and happens off this thread. */
+    public synchronized void record(String key, long positionMs, long durationMs) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length == 0 || keyBytes.length > MAX_KEY_BYTES) {
+            return;
+        }
+        Entry previous = entries.get(key);
+        if (previous != null && previous.positionMs == positionMs && previous.durationMs == durationMs) {
+            return;
+        }
+        Entry entry = new Entry(key, positionMs, durationMs, System.currentTimeMillis());
+        entries.put(key, entry);
+        if (changedDuringCompaction != null) {
+            changedDuringCompaction.add(key);
+        }
+        // A full mapping only drops the disk copy until the compaction swaps in; the entry is
+        // kept in memory and carried over
+        if (journal.remaining() >= FIXED_RECORD_BYTES + keyBytes.length) {
+            append(journal, keyBytes, entry);
+        }
+        if (changedDuringCompaction == null && journal.position() > capacity / 4 * 3) {
+            changedDuringCompaction = new HashSet<>();
+            flusher.execute(this::compact);
+        }
+        dirty = true;
+        if (!flushScheduled) {
+            flushScheduled = true;
+            flusher.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Forces pending records to disk now, e.g. when the player goes to the background. */
+    public void flushAsync() {
+        flusher.execute(this::flush);
+    }
+
+    private void flush() {
+        MappedByteBuffer toForce;
+        synchronized (this) {
+            flushScheduled = false;
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            toForce = journal;
+        }
+        try {
+            toForce.force();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void open() throws IOException {
+        file = new RandomAccessFile(new File(directory, JOURNAL_FILE), "rw");
+        capacity = Math.max(capacity, (int) file.length());
+        journal = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void replay() {
+        boolean torn = false;
+        while (journal.remaining() >= FIXED_RECORD_BYTES) {
+            int start = journal.position();
+            int keyLength = journal.getInt();
+            if (keyLength == 0) {
+                // Records are written in order, so the first empty slot is the end
+                journal.position(start);
+                break;
+            }
+            if (keyLength < 0 || keyLength > MAX_KEY_BYTES || journal.remaining() < keyLength + FIXED_RECORD_BYTES - 4) {
+                journal.position(start);
+                torn = true;
+                break;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            journal.get(keyBytes);
+            long positionMs = journal.getLong();
+            long durationMs = journal.getLong();
+            long updatedAtMs = journal.getLong();
+            int expected = journal.getInt();
+            if (checksum(journal, start, journal.position() - 4) != expected) {
+                // Torn write from a crash: everything from here on is garbage
+                journal.position(start);
+                torn = true;
+                break;
+            }
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            entries.put(key, new Entry(key, positionMs, durationMs, updatedAtMs));
+        }
+        if (torn) {
+            // Zero the tail so a later replay stops where valid records end
+            for (int i = journal.position(); i < capacity; i++) {
+                journal.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private static void append(MappedByteBuffer buffer, byte[] keyBytes, Entry entry) {
+        int start = buffer.position();
+        buffer.putInt(keyBytes.length);
+        buffer.put(keyBytes);
+        buffer.putLong(entry.positionMs);
+        buffer.putLong(entry.durationMs);
+        buffer.putLong(entry.updatedAtMs);
+        buffer.putInt(checksum(buffer, start, buffer.position()));
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int from, int to) {
+        CRC32 crc = new CRC32();
+        for (int i = from; i < to; i++) {
+            crc.update(buffer.get(i));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Rewrites only the live entries into a new journal and swaps it in with a rename. Runs on
+     * the flusher thread; the new file is written and forced without holding the lock, so
+     * record() keeps appending to the old journal meanwhile.
+     */
+    private void compact() {
+        List<Entry> live;
+        int newCapacity;
+        synchronized (this) {
+            live = query(null);
+            if (live.size() > MAX_ENTRIES) {
+                live = new ArrayList<>(live.subList(0, MAX_ENTRIES));
+            }
+            newCapacity = capacity;
+        }
+        int needed = 0;
+        for (Entry entry : live) {
+            needed += FIXED_RECORD_BYTES + entry.key.getBytes(StandardCharsets.UTF_8).length;
+        }
+        while (needed > newCapacity / 2) {
+            newCapacity *= 2;
+        }
+
+        File temp = new File(directory, JOURNAL_FILE + ".tmp");
+        temp.delete();
+        RandomAccessFile tempFile = null;
+        try {
+            tempFile = new RandomAccessFile(temp, "rw");
+            MappedByteBuffer compacted = tempFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, newCapacity);
+            for (Entry entry : live) {
+                append(compacted, entry.key.getBytes(StandardCharsets.UTF_8), entry);
+            }
+            compacted.force();
+
+            synchronized (this) {
+                // Trim to what was kept plus whatever was recorded since the snapshot
+                Map<String, Entry> kept = new HashMap<>();
+                for (Entry entry : live) {
+                    kept.put(entry.key, entries.get(entry.key));
+                }
+                for (String key : changedDuringCompaction) {
+                    Entry entry = entries.get(key);
+                    kept.put(key, entry);
+                    // Half the new capacity is free, and far fewer keys change in the meantime
+                    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                    if (compacted.remaining() >= FIXED_RECORD_BYTES + keyBytes.length) {
+                        append(compacted, keyBytes, entry);
+                    }
+                }
+                if (!temp.renameTo(new File(directory, JOURNAL_FILE))) {
+                    throw new IOException("Could not replace progress journal");
+                }
+                entries.clear();
+                entries.putAll(kept);
+                RandomAccessFile previous = file;
+                file = tempFile;
+                tempFile = null;
+                journal = compacted;
+                capacity = newCapacity;
+                changedDuringCompaction = null;
+                // The records carried over are not on disk yet
+                dirty = true;
+                try {
+                    previous.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            flush();
+        } catch (Exception e) {
+            e.printStackTrace();
+            temp.delete();
+            synchronized (this) {
+                // Try again on a later record
+                changedDuringCompaction = null;
+            }
+        } finally {
+            if (tempFile != null) {
+                try {
+                    tempFile.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.stremio.player.plugins.exoplayer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
+
+/**
+ * Feeds the playing title's position into WatchProgressJournal: every
+ * {@link #RECORD_INTERVAL_MS} while playing, whenever playback stops, and when the player is
+ * detached. Lives in PlaybackService next to the event emitter. Main thread only.
+ */
+public class WatchProgressRecorder implements Player.Listener {
+    private static final long RECORD_INTERVAL_MS = 10000;
+    private static final long MIN_RESUME_POSITION_MS = 5000;
+    private static final float FINISHED_FRACTION = 0.95f;
+
+    private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable recordRunnable = this::tick;
+    private Player player;
+    private String key;
+    // Until playback has actually started the position says nothing about where the user is
+    private boolean started;
+
+    public WatchProgressRecorder(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /** Where to resume {@code key}, or C.TIME_UNSET if it was barely started or already finished. */
+    public static long getResumePosition(Context context, String key) {
+        WatchProgressJournal journal = key != null ? WatchProgressJournal.get(context) : null;
+        WatchProgressJournal.Entry entry = journal != null ? journal.getEntry(key) : null;
+        if (entry == null || entry.positionMs < MIN_RESUME_POSITION_MS) {
+            return C.TIME_UNSET;
+        }
+        if (entry.durationMs > 0 && entry.positionMs >= entry.durationMs * FINISHED_FRACTION) {
+            return C.TIME_UNSET;
+        }
+        return entry.positionMs;
+    }
+
+    /** Switches to another player and title; the previous one gets a final record. */
+    public void setPlayer(Player newPlayer, String newKey) {
+        if (player != null) {
+            record();
+            player.removeListener(this);
+        }
+        handler.removeCallbacks(recordRunnable);
+        player = newPlayer;
+        key = newKey;
+        started = player != null && player.isPlaying();
+        if (player != null && key != null) {
+            player.addListener(this);
+            updateTicker();
+        } else {
+            player = null;
+        }
+    }
+
+    /** Follows the player to another title without recording the new position under the old key. */
+    public void setKey(String newKey) {
+        key = newKey;
+        started = player != null && player.isPlaying();
+        updateTicker();
+    }
+
+    /** Records now and pushes the journal to disk, e.g. when the activity goes to the background. */
+    public void save() {
+        record();
+        WatchProgressJournal journal = WatchProgressJournal.get(context);
+        if (journal != null) {
+            journal.flushAsync();
+        }
+    }
+
+    @Override
+    public void onIsPlayingChanged(boolean isPlaying) {
+        if (isPlaying) {
+            started = true;
+        } else {
+            record();
+        }
+        updateTicker();
+    }
+
+    private void updateTicker() {
+        handler.removeCallbacks(recordRunnable);
+        if (player != null && player.isPlaying()) {
+            handler.postDelayed(recordRunnable, RECORD_INTERVAL_MS);
+        }
+    }
+
+    private void tick() {
+        record();
+        updateTicker();
+    }
+
+    private void record() {
+        if (player == null || key == null || !started || player.getPlaybackState() == Player.STATE_IDLE) {
+            return;
+        }
+        long duration = player.getDuration();
+        WatchProgressJournal journal = WatchProgressJournal.get(context);
+        if (journal != null) {
+            journal.record(key, player.getCurrentPosition(), duration == C.TIME_UNSET ? -1 : duration);
+        }
+    }
+}
@@ -298,12 +298,17 @@ const MetadataDialog = () => {
                         streamId = `${streamingId}:${season}:${episode}`;
                     }
 
-                    const stremioResponses = await stremioService.getStreams(type, streamId);
-                    const stremioStreams = stremioResponses.flatMap(response => response.streams || []);
-                    console.log('Stremio streams:', stremioStreams);
-                    if (stremioStreams.length > 0) {
-                        updateStreams(stremioStreams);
-                    }
+                    // Each addon's streams are shown once that addon answers, hosts that played
+                    // well before first and the top few then measured; ranking happens before a
+                    // batch is shown, so nothing already on screen moves
+                    const stremioResponses = await stremioService.getStreams(type, streamId, (streams) => {
+                        if (streams && streams.length > 0) {
+                            stremioService.sortStreamsByHostScore(streams)
+                                .then(sorted => stremioService.rankStreams(sorted, 5, 1500))
+                                .then(updateStreams);
+                        }
+                    });
+                    console.log('Stremio streams:', stremioResponses.flatMap(response => response.streams || []));
                 } catch (error) {
                     console.error('Stremio API error:', error);
                 }
@@ -325,6 +330,15 @@ const MetadataDialog = () => {
         }
     };
 
+    const getSubtitleLookup = () => {
+        const streamingId = metadata?.imdb_id || id;
+        return {
+            type,
+            id: type === 'series' ? `${streamingId}:${selectedSeason}:${selectedEpisode}` : streamingId,
+            addons: stremioService.getSubtitleAddonUrls(type)
+        };
+    };
+
     const handleStreamClick = async (stream: Stream) => {
         if (stream.behaviorHints?.notWebReady) {
             const isVideoFile = stream.url.match(/\.(mkv|mp4|avi|mov|wmv)$/i);
@@ -357,8 +371,12 @@ const MetadataDialog = () => {
             try {
                 await ExoPlayer.play({
                     url: stream.url,
+                    // The rest of the list, as shown, to race and fail over to
+                    candidates: stremioService.getStreamCandidates(
+                        stream, Object.values(groupedStreams).flatMap(group => group.streams)),
                     title: stream.title || stream.name || 'Video',
-                    headers: stream.behaviorHints?.headers
+                    headers: stream.behaviorHints?.headers,
+                    subtitleLookup: getSubtitleLookup()
                 });
             } catch (error) {
                 console.error('Error playing video with ExoPlayer:', error);
@@ -531,12 +531,17 @@ const MobileMetadataDialog = () => {
                         streamId = `${streamingId}:${season}:${episode}`;
                     }
 
-                    const stremioResponses = await stremioService.getStreams(type, streamId);
-                    const stremioStreams = stremioResponses.flatMap(response => response.streams || []);
-                    console.log('Stremio streams:', stremioStreams);
-                    if (stremioStreams.length > 0) {
-                        updateStreams(stremioStreams);
-                    }
+                    // Each addon's streams are shown once that addon answers, hosts that played
+                    // well before first and the top few then measured; ranking happens before a
+                    // batch is shown, so nothing already on screen moves
+                    const stremioResponses = await stremioService.getStreams(type, streamId, (streams) => {
+                        if (streams && streams.length > 0) {
+                            stremioService.sortStreamsByHostScore(streams)
+                                .then(sorted => stremioService.rankStreams(sorted, 5, 1500))
+                                .then(updateStreams);
+                        }
+                    });
+                    console.log('Stremio streams:', stremioResponses.flatMap(response => response.streams || []));
                 } catch (error) {
                     console.error('Stremio API error:', error);
                 }
@@ -559,6 +564,15 @@ const MobileMetadataDialog = () => {
         }
     };
 
+    const getSubtitleLookup = () => {
+        const streamingId = metadata?.imdb_id || id;
+        return {
+            type,
+            id: type === 'series' ? `${streamingId}:${selectedSeason}:${selectedEpisode}` : streamingId,
+            addons: stremioService.getSubtitleAddonUrls(type)
+        };
+    };
+
     const handleStreamClick = async (stream: LocalStream) => {
         if (!stream.url) {
             console.error('No stream URL provided');
@@ -574,6 +588,9 @@ const MobileMetadataDialog = () => {
                 return;
             }
 
+            // The rest of the list, as shown, to race and fail over to
+            const candidates = stremioService.getStreamCandidates(
+                stream, Object.values(groupedStreams).flatMap(group => group.streams));
             const { value: useExternalPlayer } = await Preferences.get({ key: 'useExternalPlayer' });
             console.log('External player setting:', useExternalPlayer, 'Platform:', Capacitor.getPlatform());
             
@@ -596,12 +613,14 @@ const MobileMetadataDialog = () => {
                     // Fallback to ExoPlayer
                     await ExoPlayer.play({
                         url: stream.url,
+                        candidates,
                         title: stream.title || stream.name || 'Video',
                         headers: stream.behaviorHints?.headers,
                         subtitles: stream.subtitles?.map(sub => ({
                             url: sub.url,
                             language: sub.lang
-                        }))
+                        })),
+                        subtitleLookup: getSubtitleLookup()
                     });
                 }
             } else if (Capacitor.getPlatform() === 'android') {
@@ -609,12 +628,14 @@ const MobileMetadataDialog = () => {
                 try {
                     await ExoPlayer.play({
                         url: stream.url,
+                        candidates,
                         title: stream.title || stream.name || 'Video',
                         headers: stream.behaviorHints?.headers,
                         subtitles: stream.subtitles?.map(sub => ({
                             url: sub.url,
                             language: sub.lang
-                        }))
+                        })),
+                        subtitleLookup: getSubtitleLookup()
                     });
                 } catch (error) {
                     console.error('Error playing video with ExoPlayer:', error);
@@ -15,6 +15,7 @@ import {
     Skeleton
 } from '@mui/material';
 import { catalogService } from '../services/catalogService';
+import { sizedImageUrl } from '../services/imageService';
 import { StreamingAddon, StreamingContent } from '../types/catalog';
 import PlayArrowIcon from '@mui/icons-material/PlayArrow';
 import InfoIcon from '@mui/icons-material/Info';
@@ -48,7 +49,7 @@ const ContentCard = React.memo(({ item, onContentClick }: { item: StreamingConte
             <CardMedia
                 component="img"
                 height={400}
-                image={item.poster}
+                image={sizedImageUrl(item.poster, 280, 400)}
                 alt={item.name}
                 className="poster-image"
                 loading="lazy"
@@ -14,6 +14,7 @@ import {
     CircularProgress
 } from '@mui/material';
 import { catalogService } from '../services/catalogService';
+import { sizedImageUrl } from '../services/imageService';
 import { StreamingAddon, StreamingContent } from '../types/catalog';
 import PlayArrowIcon from '@mui/icons-material/PlayArrow';
 import InfoIcon from '@mui/icons-material/Info';
@@ -55,7 +56,7 @@ export const MobileContentCard = React.memo(({ item }: { item: StreamingContent
         <Box sx={{ position: 'relative', aspectRatio: '2/3' }}>
             <CardMedia
                 component="img"
-                image={item.poster}
+                image={sizedImageUrl(item.poster, 200, 300)}
                 alt={item.name}
                 className="poster-image"
                 loading="lazy"
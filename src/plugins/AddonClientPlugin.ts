@@ -0,0 +1,66 @@
+import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
+
+/** One addon endpoint, e.g. `{base}/stream/movie/tt0111161.json`. */
+export interface AddonRequest {
+  /** Echoed back on the response event; defaults to the url. */
+  id?: string;
+  url: string;
+}
+
+/** Sent once per request of a batch, as soon as that request finishes. */
+export interface AddonResponseEvent {
+  batchId: string;
+  id: string;
+  url: string;
+  ok: boolean;
+  /** HTTP status, 0 if no response arrived. */
+  status: number;
+  elapsedMs: number;
+  /** Answered from the on-device cache (staleWhileRevalidate batches only). */
+  fromCache: boolean;
+  /** A cached body past its Cache-Control lifetime; a revalidation is on its way. */
+  stale: boolean;
+  /** The parsed response body when ok. */
+  data?: any;
+  error?: string;
+}
+
+/** A stale cached response was revalidated and the addon returned something new. */
+export interface AddonUpdateEvent {
+  batchId: string;
+  id: string;
+  url: string;
+  data: any;
+}
+
+export interface AddonClientPlugin {
+  /**
+   * Sends every request at once (at most 4 per host) and emits an 'addonResponse' event for each.
+   * Resolves once all of them have reported; a request gets up to timeoutMs (default 15000)
+   * including one retry on network errors and 5xx/429 responses. Reusing a running batchId
+   * cancels the earlier batch.
+   *
+   * With cache 'staleWhileRevalidate', stored responses are returned at once whatever their age and
+   * expired ones are revalidated in the background (ETag / Last-Modified), emitting 'addonUpdate'
+   * if they changed. The default, 'network', neither reads nor writes the cache.
+   */
+  fetch(options: {
+    batchId: string;
+    requests: AddonRequest[];
+    headers?: Record<string, string>;
+    timeoutMs?: number;
+    cache?: 'network' | 'staleWhileRevalidate';
+  }): Promise<{ batchId: string; succeeded: number; failed: number; elapsedMs: number }>;
+  /** Cancelled requests still report, with error 'Cancelled'. */
+  cancel(options: { batchId: string }): Promise<void>;
+  /** The response cache is capped at maxBytes and evicts least recently used entries. */
+  getCacheUsage(): Promise<{ usedBytes: number; maxBytes: number }>;
+  clearCache(): Promise<void>;
+  addListener(eventName: 'addonResponse', listenerFunc: (event: AddonResponseEvent) => void): Promise<PluginListenerHandle>;
+  addListener(eventName: 'addonUpdate', listenerFunc: (event: AddonUpdateEvent) => void): Promise<PluginListenerHandle>;
+  removeAllListeners(): Promise<void>;
+}
+
+const AddonClient = registerPlugin<AddonClientPlugin>('AddonClient');
+export default AddonClient;
@@ -1,15 +1,203 @@
 import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
+
+/** Buffering policy for the native player; omitted fields use the native defaults. */
+export interface BufferConfig {
+  minBufferMs?: number;
+  maxBufferMs?: number;
+  bufferForPlaybackMs?: number;
+  bufferForPlaybackAfterRebufferMs?: number;
+  /** Media kept behind the playhead for instant rewinds (default 30000). */
+  backBufferMs?: number;
+  /** Memory ceiling for buffered media; defaults to half of the app heap. */
+  maxBufferMb?: number;
+}
+
+export interface PlayerStateEvent {
+  state: 'idle' | 'buffering' | 'ready' | 'ended';
+  playing: boolean;
+  playWhenReady: boolean;
+  speed?: number;
+}
+
+/** Sent at most once per positionIntervalMs while playing, and immediately on seek, pause and state changes. */
+export interface PlayerTimeEvent {
+  position: number;
+  /** -1 while unknown. */
+  duration: number;
+  bufferedPosition: number;
+}
+
+export interface PlayerTrack {
+  type: 'video' | 'audio' | 'text';
+  id?: string;
+  language?: string;
+  label?: string;
+  selected: boolean;
+  height?: number;
+  bitrate?: number;
+}
+
+export interface PlayerErrorEvent {
+  code: string;
+  message?: string;
+}
+
+/** One step of an execute() batch; steps run in order in a single native task. */
+export type PlayerCommand =
+  | { type: 'play' }
+  | { type: 'pause' }
+  | { type: 'seek'; position: number }
+  | { type: 'speed'; speed: number }
+  | { type: 'audioLanguage'; language: string }
+  | { type: 'subtitles'; language?: string; enabled?: boolean };
+
+/** QoE counters for one playback session; -1 means not measured yet. */
+export interface PlaybackSessionStats {
+  url: string;
+  startedAt: number;
+  durationMs: number;
+  ended: boolean;
+  timeToFirstFrameMs: number;
+  rebufferCount: number;
+  rebufferMs: number;
+  videoFormatSwitches: number;
+  videoBitrate: number;
+  videoHeight: number;
+  droppedFrames: number;
+  bandwidthEstimate: number;
+  averageBandwidthEstimate: number;
+  videoDecoder?: string;
+  videoDecoderInitMs: number;
+  audioDecoder?: string;
+  audioDecoderInitMs: number;
+  errorCount: number;
+  lastError?: string;
+}
+
+export interface StreamCandidate {
+  url: string;
+  /** Defaults to the headers passed to play(). */
+  headers?: Record<string, string>;
+}
+
+export interface StreamFailoverEvent {
+  url: string;
+  position: number;
+  /** Candidates left to fail over to. */
+  remaining: number;
+  reason: string;
+}
+
+export interface StreamProbeResult {
+  url: string;
+  /** False when the host failed, answered with an error or missed the deadline. */
+  ok: boolean;
+  status: number;
+  ttfbMs: number;
+  bytesRead: number;
+  /** Sustained throughput once the body started flowing, in bits per second. */
+  throughputBps: number;
+  contentType?: string;
+  /** hls, dash, matroska, webm, mp4, mpegts, avi, flv, html or unknown. */
+  container: string;
+  /** Full size of the resource, -1 if the host did not say. */
+  contentLength: number;
+  rangeSupported: boolean;
+  error?: string;
+}
+
+export interface HostScore {
+  /** Origin, as in URL.origin. */
+  host: string;
+  /** Moving average of the player's bandwidth estimate on this host, -1 if never measured. */
+  throughputBps: number;
+  /** Moving average from play to ready, -1 if the host never started. */
+  startupMs: number;
+  /** 0..1, moving average over start-ups and load failures. */
+  failureRate: number;
+  samples: number;
+  /** 0..1; fades as the averages age or when there are few samples. */
+  confidence: number;
+  updatedAt: number;
+}
+
+export interface QueueItem {
+  url: string;
+  title?: string;
+  headers?: Record<string, string>;
+  subtitles?: Array<{
+    url: string;
+    language: string;
+  }>;
+  progressKey?: string;
+  subtitleLookup?: {
+    type: string;
+    id: string;
+    addons: string[];
+  };
+}
+
+export interface QueueItemChangeEvent {
+  url: string;
+  title: string;
+  progressKey: string;
+  /** Items left after this one. */
+  remaining: number;
+}
+
+export interface WatchProgress {
+  key: string;
+  position: number;
+  /** -1 when the duration was not known yet. */
+  duration: number;
+  updatedAt: number;
+}
 
 export interface ExoPlayerPlugin {
   play(options: {
-    url: string;
+    /** Preferred stream; optional when candidates are given. */
+    url?: string;
+    /**
+     * Alternative streams for the same title, best first. The top few are raced and playback
+     * starts on the first that delivers; the rest are failed over to if the host dies.
+     */
+    candidates?: Array<string | StreamCandidate>;
     title?: string;
     headers?: Record<string, string>;
     subtitles?: Array<{
       url: string;
       language: string;
     }>;
+    buffer?: BufferConfig;
+    /** Lets the native player query subtitle addons itself, e.g. `{ type: 'series', id: 'tt0944947:1:1', addons }`. */
+    subtitleLookup?: {
+      type: string;
+      id: string;
+      addons: string[];
+    };
+    /** Interval of timeUpdate events while playing (default 1000). */
+    positionIntervalMs?: number;
+    /** BIF file or WebVTT sprite map for scrub previews; HLS I-frame tracks are found automatically. */
+    trickplayUrl?: string;
+    /** Title id for watch progress, e.g. 'tt0944947:1:1'; defaults to the stream URL without tokens. */
+    progressKey?: string;
+    /** Start from the stored position unless the title was barely started or already finished. */
+    resume?: boolean;
+    /** Episodes to play after this one; the next is pre-buffered near the end of the current. */
+    queue?: QueueItem[];
   }): Promise<void>;
+  /** Starts buffering a stream before play() opens the player; play() with the same url adopts it. */
+  preload(options: {
+    url: string;
+    headers?: Record<string, string>;
+    subtitles?: Array<{
+      url: string;
+      language: string;
+    }>;
+    buffer?: BufferConfig;
+  }): Promise<void>;
+  cancelPreload(): Promise<void>;
   pause(): Promise<void>;
   stop(): Promise<void>;
   setPlaybackSpeed(options: { speed: number }): Promise<void>;
@@ -17,6 +205,60 @@ export interface ExoPlayerPlugin {
   getDuration(): Promise<{ duration: number }>;
   getCurrentPosition(): Promise<{ position: number }>;
   isPlaying(): Promise<{ playing: boolean }>;
+  /** Applies all commands or none (the batch is rejected if any command is invalid). */
+  execute(options: { commands: PlayerCommand[] }): Promise<{
+    applied: number;
+    position: number;
+    duration: number;
+    playing: boolean;
+    speed: number;
+  }>;
+  /** Latest native snapshot; answered without a main-thread hop. */
+  getState(): Promise<{
+    position: number;
+    duration: number;
+    bufferedPosition: number;
+    playing: boolean;
+    speed: number;
+    audioLanguage?: string;
+    textLanguage?: string;
+    videoHeight: number;
+  }>;
+  /** Running session plus the last few finished ones, newest first. */
+  getStats(): Promise<{ current: PlaybackSessionStats | null; sessions: PlaybackSessionStats[] }>;
+  /**
+   * Probes streams in parallel with small range requests and ranks them by measured throughput,
+   * fastest first; whatever has not answered by deadlineMs (default 4000) is ranked last.
+   */
+  probeStreams(options: {
+    urls: Array<string | StreamCandidate>;
+    headers?: Record<string, string>;
+    deadlineMs?: number;
+    probeBytes?: number;
+  }): Promise<{ results: StreamProbeResult[] }>;
+  /** Replaces the episodes that follow the one playing. */
+  setQueue(options: { items: QueueItem[] }): Promise<void>;
+  /** Stored watch progress for the given keys (or every title), most recently watched first. */
+  getProgress(options?: { keys?: string[] }): Promise<{ entries: WatchProgress[] }>;
+  /**
+   * What playback has learned about the hosts of the given URLs (or every known host), most
+   * reliable first. No network access; hosts never played from are left out.
+   */
+  getHostScores(options?: { urls?: string[] }): Promise<{ scores: HostScore[] }>;
+  getCacheUsage(): Promise<{ usedBytes: number; maxBytes: number }>;
+  clearCache(): Promise<void>;
+  /** Takes effect the next time the app starts. */
+  setCacheSize(options: { maxBytes: number }): Promise<void>;
+  setEventOptions(options: { positionIntervalMs?: number }): Promise<void>;
+  /** Emits android.os.Trace sections and counters for Perfetto captures while enabled. */
+  setTracing(options: { enabled: boolean }): Promise<void>;
+  addListener(eventName: 'stateChange', listenerFunc: (event: PlayerStateEvent) => void): Promise<PluginListenerHandle>;
+  addListener(eventName: 'timeUpdate', listenerFunc: (event: PlayerTimeEvent) => void): Promise<PluginListenerHandle>;
+  addListener(eventName: 'tracksChange', listenerFunc: (event: { tracks: PlayerTrack[] }) => void): Promise<PluginListenerHandle>;
+  addListener(eventName: 'queueItemChange', listenerFunc: (event: QueueItemChangeEvent) => void): Promise<PluginListenerHandle>;
+  addListener(eventName: 'streamFailover', listenerFunc: (event: StreamFailoverEvent) => void): Promise<PluginListenerHandle>;
+  addListener(eventName: 'error', listenerFunc: (event: PlayerErrorEvent) => void): Promise<PluginListenerHandle>;
+  removeAllListeners(): Promise<void>;
 }
 
 const ExoPlayer = registerPlugin<ExoPlayerPlugin>('ExoPlayer');
@@ -0,0 +1,57 @@
+import axios from 'axios';
+import { Capacitor } from '@capacitor/core';
+import AddonClient, { type AddonRequest, type AddonResponseEvent } from '../plugins/AddonClientPlugin';
+
+let nextBatchId = 0;
+
+export function useNativeAddonClient(): boolean {
+  return Capacitor.getPlatform() === 'android';
+}
+
+/**
+ * Fetches all requests at once through the native AddonClient, calling onResponse for each as it
+ * arrives. Resolves when every request has answered or timed out. Android only.
+ */
+export async function fetchFromAddons(
+  requests: AddonRequest[],
+  onResponse: (event: AddonResponseEvent) => void,
+  cache: 'network' | 'staleWhileRevalidate' = 'network'
+): Promise<void> {
+  if (requests.length === 0) {
+    return;
+  }
+  const batchId = `addons-${++nextBatchId}`;
+  const handle = await AddonClient.addListener('addonResponse', event => {
+    if (event.batchId === batchId) {
+      onResponse(event);
+    }
+  });
+  try {
+    await AddonClient.fetch({ batchId, requests, cache });
+  } finally {
+    await handle.remove();
+  }
+}
+
+/**
+ * GETs an addon JSON document (manifest, catalog, meta). On Android a cached copy is returned
+ * straight away, even when stale, and refreshed in the background for next time, unless `cache`
+ * is 'network'; elsewhere this is a plain request.
+ */
+export async function getAddonJson<T = any>(
+  url: string,
+  cache: 'network' | 'staleWhileRevalidate' = 'staleWhileRevalidate'
+): Promise<T> {
+  if (!useNativeAddonClient()) {
+    const response = await axios.get<T>(url);
+    return response.data;
+  }
+  let result: AddonResponseEvent | undefined;
+  await fetchFromAddons([{ url }], event => {
+    result = event;
+  }, cache);
+  if (!result?.ok) {
+    throw new Error(result?.error || `Request failed: ${url}`);
+  }
+  return result.data as T;
+}
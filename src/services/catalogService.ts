@@ -1,4 +1,5 @@
 import axios from 'axios';
+import { getAddonJson } from './addonHttp';
 import { StreamingAddon, StreamingContent } from '../types/catalog';
 
 const CINEMETA_URL = 'https://v3-cinemeta.strem.io';
@@ -88,21 +89,21 @@ export const catalogService = {
                 search: options?.search
             });
 
-            const response = await axios.get(url);
+            // Served from the on-device cache when available, so catalog rows render on cold start
+            const data = await getAddonJson(url);
             
             // Debug log the raw response
             console.log('API Response:', {
                 url,
-                status: response.status,
-                hasData: !!response.data,
-                hasMetas: Array.isArray(response.data?.metas),
-                metasLength: response.data?.metas?.length,
-                firstItem: response.data?.metas?.[0]
+                hasData: !!data,
+                hasMetas: Array.isArray(data?.metas),
+                metasLength: data?.metas?.length,
+                firstItem: data?.metas?.[0]
             });
 
             // Map the response data to match our StreamingContent interface
-            if (response.data && Array.isArray(response.data.metas)) {
-                const results = response.data.metas
+            if (data && Array.isArray(data.metas)) {
+                const results = data.metas
                     .filter((item: any) => {
                         if (!options?.search) return true;
                         
@@ -260,13 +261,13 @@ export const catalogService = {
             const imdbId = id.startsWith('tt') ? id : `tt${id}`;
             
             // Fetch data from Cinemeta
-            const cinemetaResponse = await axios.get(`${CINEMETA_URL}/meta/${type}/${imdbId}.json`);
+            const cinemetaResponse = await getAddonJson(`${CINEMETA_URL}/meta/${type}/${imdbId}.json`);
             
-            if (!cinemetaResponse.data?.meta) {
+            if (!cinemetaResponse?.meta) {
                 throw new Error('No metadata returned from Cinemeta');
             }
 
-            const data = cinemetaResponse.data.meta;
+            const data = cinemetaResponse.meta;
 
             // Get TMDB ID from IMDB ID with timeout and retry
             let tmdbId;
@@ -409,13 +410,13 @@ export const catalogService = {
             const url = `${CINEMETA_URL}/meta/series/${imdbId}.json`;
 
             console.log('Fetching season details from Cinemeta:', url);
-            const response = await axios.get(url);
+            const response = await getAddonJson(url);
             
-            if (!response.data?.meta) {
+            if (!response?.meta) {
                 throw new Error('No metadata returned from Cinemeta');
             }
 
-            const data = response.data.meta;
+            const data = response.meta;
             
             // Filter videos for the requested season and ensure they have all required data
             const seasonEpisodes = (data.videos || [])
@@ -0,0 +1,21 @@
+import { Capacitor } from '@capacitor/core';
+
+// Served by ImageBridgeWebViewClient on the app's own origin
+const IMAGE_PATH = '/_image';
+
+/**
+ * URL for a poster or backdrop pre-sized for a `width` x `height` CSS-pixel slot. On Android the
+ * native pipeline fetches, downscales and caches the image, so the WebView only ever decodes a
+ * small thumbnail; elsewhere the original URL is returned unchanged.
+ */
+export function sizedImageUrl(url: string | undefined, width: number, height?: number): string | undefined {
+  if (!url || !/^https?:\/\//.test(url) || Capacitor.getPlatform() !== 'android') {
+    return url;
+  }
+  const scale = Math.min(window.devicePixelRatio || 1, 3);
+  const params = new URLSearchParams({ url, w: String(Math.round(width * scale)) });
+  if (height) {
+    params.set('h', String(Math.round(height * scale)));
+  }
+  return `${window.location.origin}${IMAGE_PATH}?${params.toString()}`;
+}
@@ -1,6 +1,20 @@
 import axios from 'axios';
+import { Capacitor } from '@capacitor/core';
+import ExoPlayer from '../plugins/ExoPlayerPlugin';
+import type { StreamCandidate } from '../plugins/ExoPlayerPlugin';
+import type { AddonRequest } from '../plugins/AddonClientPlugin';
+import { fetchFromAddons, getAddonJson, useNativeAddonClient } from './addonHttp';
 import { Stream, StreamResponse, Meta } from '../types/stremio';
 
+/** The parts of a stream the native player needs; the dialogs' stream types all fit it. */
+type PlayableStream = {
+  url: string;
+  behaviorHints?: {
+    notWebReady?: boolean;
+    headers?: Record<string, string>;
+  };
+};
+
 interface CatalogFilter {
   title: string;
   value: any;
@@ -149,9 +163,9 @@ class StremioService {
 
   async getManifest(url: string): Promise<Manifest> {
     try {
-      // First fetch the manifest to get the addon's configuration
-      const response = await axios.get<Manifest>(url);
-      const manifest = response.data;
+      // First fetch the manifest to get the addon's configuration; always from the network,
+      // since installing or refreshing an addon must not pick up a cached copy of any age
+      const manifest = await getAddonJson<Manifest>(url, 'network');
       
       // Get base URL without query parameters
       const urlObj = new URL(url);
@@ -235,6 +249,27 @@ class StremioService {
     const results: { [addonId: string]: Meta[] } = {};
     const addons = Array.from(this.installedAddons.values());
 
+    if (useNativeAddonClient()) {
+      const requests: AddonRequest[] = [];
+      for (const addon of addons) {
+        for (const catalog of addon.catalogs || []) {
+          const url = this.buildCatalogUrl(addon, catalog.type, catalog.id);
+          if (url) {
+            results[addon.id] = results[addon.id] || [];
+            requests.push({ id: addon.id, url });
+          }
+        }
+      }
+      await fetchFromAddons(requests, event => {
+        if (event.ok) {
+          results[event.id].push(...(event.data?.metas || []));
+        } else {
+          console.error(`Error fetching catalog ${event.url}:`, event.error);
+        }
+      }, 'staleWhileRevalidate');
+      return results;
+    }
+
     for (const addon of addons) {
       if (!addon.catalogs || addon.catalogs.length === 0) continue;
 
@@ -255,12 +290,28 @@ class StremioService {
   }
 
   async getCatalog(manifest: Manifest, type: string, id: string, page?: number, filters: CatalogFilter[] = []): Promise<Meta[]> {
+    const url = this.buildCatalogUrl(manifest, type, id, page, filters);
+    if (!url) {
+      return [];
+    }
+
+    try {
+      const data = await getAddonJson(url);
+      console.log("Getting catalog from", url);
+      return data.metas || [];
+    } catch (error) {
+      console.error('Error fetching catalog:', error);
+      return [];
+    }
+  }
+
+  private buildCatalogUrl(manifest: Manifest, type: string, id: string, page?: number, filters: CatalogFilter[] = []): string | null {
     let url = `${this.getAddonBaseURL(manifest.url || manifest.originalUrl!)}/catalog/${type}/${id}`;
 
     const catalog = manifest.catalogs?.find(item => item.type === type && item.id === id);
     if (!catalog) {
       console.log("Catalog not found", type, id);
-      return [];
+      return null;
     }
 
     // Handle filters and pagination
@@ -293,14 +344,7 @@ class StremioService {
       url += '.json';
     }
 
-    try {
-      const response = await axios.get(url);
-      console.log("Getting catalog from", url);
-      return response.data.metas || [];
-    } catch (error) {
-      console.error('Error fetching catalog:', error);
-      return [];
-    }
+    return url;
   }
 
   private getAddonBaseURL(url: string): string {
@@ -311,6 +355,22 @@ class StremioService {
     const addons = Array.from(this.installedAddons.values())
       .filter(addon => addon.resources?.some(r => r.name === 'meta' && r.types.includes(type)));
 
+    if (useNativeAddonClient()) {
+      // Ask every meta addon at once; the first addon in install order that has the title wins
+      const metas: (MetaDetails | null | undefined)[] = addons.map(() => undefined);
+      const buildUrl = (addon: Manifest) => `${addon.url}/meta/${type}/${this.formatId(id)}.json`;
+      const requests = addons
+        .map((addon, index) => ({ id: String(index), url: addon.url ? buildUrl(addon) : '' }))
+        .filter(request => request.url);
+      await fetchFromAddons(requests, event => {
+        metas[Number(event.id)] = event.ok ? event.data?.meta || null : null;
+        if (!event.ok) {
+          console.error(`Error fetching meta from ${addons[Number(event.id)].name}:`, event.error);
+        }
+      }, 'staleWhileRevalidate');
+      return metas.find(meta => meta) || null;
+    }
+
     for (const addon of addons) {
       try {
         if (!addon.url) continue;
@@ -356,6 +416,89 @@ class StremioService {
     return results;
   }
 
+  /** Base URLs of installed addons that serve subtitles for `type`, for the native player's own lookup. */
+  getSubtitleAddonUrls(type: string): string[] {
+    return Array.from(this.installedAddons.values())
+      .filter(addon => addon.url && addon.resources?.some(r => r.name === 'subtitles' && r.types.includes(type)))
+      .map(addon => addon.url!);
+  }
+
+  /**
+   * Orders streams by what past playback learned about their hosts, without touching the network.
+   * Hosts with a record go first (fewest failures, then fastest); the rest keep their order after them.
+   */
+  async sortStreamsByHostScore(streams: Stream[]): Promise<Stream[]> {
+    if (Capacitor.getPlatform() !== 'android' || streams.length < 2) {
+      return streams;
+    }
+    try {
+      const { scores } = await ExoPlayer.getHostScores({ urls: streams.map(stream => stream.url) });
+      const rank = new Map(scores.map((score, index) => [score.host, index]));
+      const rankOf = (stream: Stream) => {
+        try {
+          return rank.get(new URL(stream.url).origin) ?? scores.length;
+        } catch {
+          return scores.length;
+        }
+      };
+      return [...streams].sort((a, b) => rankOf(a) - rankOf(b));
+    } catch (error) {
+      console.error('Failed to load host scores:', error);
+      return streams;
+    }
+  }
+
+  /**
+   * Orders the first `limit` HTTP streams on distinct hosts by measured host throughput on
+   * Android; every other stream keeps its place. Each probe carries that stream's own headers.
+   * Elsewhere, or if probing fails, the same array is returned unchanged.
+   */
+  async rankStreams<T extends PlayableStream>(streams: T[], limit: number = 5, deadlineMs: number = 4000): Promise<T[]> {
+    // Each probe reads a few hundred KB, so only the top of a long list is measured, and a host
+    // serving several of the streams is measured once
+    const origins = new Set<string>();
+    const candidates = streams.filter(stream => {
+      if (!/^https?:\/\//.test(stream.url)) return false;
+      try {
+        const origin = new URL(stream.url).origin;
+        if (origins.has(origin)) return false;
+        origins.add(origin);
+        return true;
+      } catch {
+        return false;
+      }
+    }).slice(0, limit);
+    if (Capacitor.getPlatform() !== 'android' || candidates.length < 2) {
+      return streams;
+    }
+    try {
+      const { results } = await ExoPlayer.probeStreams({
+        // An empty object rather than none, so no stream is probed with another one's headers
+        urls: candidates.map(stream => ({ url: stream.url, headers: stream.behaviorHints?.headers ?? {} })),
+        deadlineMs
+      });
+      const rank = new Map(results.map((result, index) => [result.url, result.ok ? index : results.length + index]));
+      const ranked = [...candidates].sort((a, b) => (rank.get(a.url) ?? 0) - (rank.get(b.url) ?? 0));
+      // The measured streams trade places among the slots they held
+      let next = 0;
+      return streams.map(stream => candidates.includes(stream) ? ranked[next++] : stream);
+    } catch (error) {
+      console.error('Failed to probe streams:', error);
+      return streams;
+    }
+  }
+
+  /**
+   * The other playable streams of a list, in list order and each with its own headers, for the
+   * native player to race and fail over to after `selected`.
+   */
+  getStreamCandidates(selected: { url: string }, streams: PlayableStream[]): StreamCandidate[] {
+    return streams
+      .filter(stream => stream.url !== selected.url && /^https?:\/\//.test(stream.url) && !stream.behaviorHints?.notWebReady)
+      // An empty object rather than none, so the native side does not lend them the selected stream's headers
+      .map(stream => ({ url: stream.url, headers: stream.behaviorHints?.headers ?? {} }));
+  }
+
   async getStreams(type: string, id: string, callback?: (streams: Stream[] | null, addonName: string | null, error: Error | null) => void): Promise<StreamResponse[]> {
     const responses: StreamResponse[] = [];
     const formattedId = this.formatId(id);
@@ -368,6 +511,35 @@ class StremioService {
                (!streamResource.idPrefixes || streamResource.idPrefixes.some(prefix => formattedId.startsWith(prefix)));
       });
 
+    if (useNativeAddonClient()) {
+      // All addons at once; the native client limits requests per host instead of batching
+      const requests: AddonRequest[] = [];
+      streamingAddons.forEach((addon, index) => {
+        const url = this.buildStreamUrl(addon, type, formattedId);
+        if (url) {
+          requests.push({ id: String(index), url });
+        }
+      });
+      await fetchFromAddons(requests, event => {
+        const addon = streamingAddons[Number(event.id)];
+        if (!event.ok) {
+          console.error(`Error fetching streams from ${addon.name}:`, event.error);
+          if (callback) {
+            callback(null, addon.name, new Error(event.error));
+          }
+          return;
+        }
+        const result = this.toStreamResponse(addon, event.data?.streams, type, formattedId);
+        if (result) {
+          responses.push(result);
+          if (callback) {
+            callback(result.streams, addon.name, null);
+          }
+        }
+      });
+      return responses;
+    }
+
     // Process addons in parallel with batching
     const batchSize = this.MAX_CONCURRENT_REQUESTS;
     for (let i = 0; i < streamingAddons.length; i += batchSize) {
@@ -406,89 +578,13 @@ class StremioService {
 
   private async fetchStreamsFromAddon(addon: Manifest, type: string, id: string): Promise<StreamResponse | null> {
     try {
-      const baseUrl = addon.url;
-      const queryParams = addon.queryParams || '';
-
-      if (!baseUrl) {
-        console.error(`No URL found for addon ${addon.name} (${addon.id})`);
+      const streamUrl = this.buildStreamUrl(addon, type, id);
+      if (!streamUrl) {
         return null;
       }
 
-      // Construct the stream URL
-      let streamUrl;
-      
-      // Special handling for MediaFusion
-      if (addon.name?.toLowerCase().includes('mediafusion')) {
-        // For MediaFusion, we need to use the original URL with the token
-        const baseMediaFusionUrl = addon.originalUrl?.replace('/manifest.json', '');
-        if (!baseMediaFusionUrl) {
-          console.error('MediaFusion URL is invalid:', addon.originalUrl);
-          return null;
-        }
-
-        // For series, ensure we're using the correct format tt123:1:1
-        if (type === 'series') {
-          // If id doesn't include season/episode info, it's invalid
-          if (!id.includes(':')) {
-            console.error('Invalid series ID format for MediaFusion:', id);
-            return null;
-          }
-
-          // Extract IMDB ID and validate format
-          const [imdbId, season, episode] = id.split(':');
-          if (!imdbId || !season || !episode) {
-            console.error('Invalid series ID components for MediaFusion:', { imdbId, season, episode });
-            return null;
-          }
-
-          // Ensure IMDB ID starts with 'tt'
-          const formattedImdbId = imdbId.startsWith('tt') ? imdbId : `tt${imdbId}`;
-          streamUrl = `${baseMediaFusionUrl}/stream/series/${formattedImdbId}:${season}:${episode}.json`;
-        } else {
-          streamUrl = `${baseMediaFusionUrl}/stream/${type}/${id}.json`;
-        }
-
-        console.log(`Fetching MediaFusion streams from: ${streamUrl}`);
-      } else {
-        streamUrl = `${baseUrl}/stream/${type}/${id}.json${queryParams}`;
-      }
-      
       const response = await this.retryRequest(() => axios.get<StreamResponse>(streamUrl), 3, 2000);
-      
-      if (!response.data.streams?.length) {
-        console.log(`No streams found from ${addon.name} for ${type}/${id}`);
-        return null;
-      }
-
-      // Process streams based on addon type
-      let processedStreams = this.processStreams(response.data.streams, addon);
-      
-      // Additional processing for MediaFusion streams
-      if (addon.name?.toLowerCase().includes('mediafusion')) {
-        processedStreams = processedStreams.map(stream => {
-          // Extract quality from the stream name if available
-          const quality = stream.name?.match(/\d{3,4}[pP]/)?.[0] || '';
-          const originalName = stream.name || stream.title || '';
-          
-          return {
-            ...stream,
-            // Keep the original name which contains full info
-            name: originalName,
-            // Set a clean title that shows it's from MediaFusion
-            title: quality ? `MediaFusion • ${quality}` : 'MediaFusion Stream',
-            behaviorHints: {
-              ...stream.behaviorHints,
-              // MediaFusion streams are typically web-ready
-              notWebReady: false,
-              proxyHeaders: stream.behaviorHints?.proxyHeaders || {},
-              // Add quality info to behavior hints if needed
-              quality: quality
-            }
-          };
-        });
-      }
-      
-      return processedStreams.length > 0 ? { streams: processedStreams } : null;
+      return this.toStreamResponse(addon, response.data.streams, type, id);
 
     } catch (error) {
       // More detailed error logging for MediaFusion
@@ -509,6 +605,93 @@ class StremioService {
     }
   }
 
+  private buildStreamUrl(addon: Manifest, type: string, id: string): string | null {
+    const baseUrl = addon.url;
+    const queryParams = addon.queryParams || '';
+
+    if (!baseUrl) {
+      console.error(`No URL found for addon ${addon.name} (${addon.id})`);
+      return null;
+    }
+
+    // Construct the stream URL
+    let streamUrl: string;
+    
+    // Special handling for MediaFusion
+    if (addon.name?.toLowerCase().includes('mediafusion')) {
+      // For MediaFusion, we need to use the original URL with the token
+      const baseMediaFusionUrl = addon.originalUrl?.replace('/manifest.json', '');
+      if (!baseMediaFusionUrl) {
+        console.error('MediaFusion URL is invalid:', addon.originalUrl);
+        return null;
+      }
+
+      // For series, ensure we're using the correct format tt123:1:1
+      if (type === 'series') {
+        // If id doesn't include season/episode info, it's invalid
+        if (!id.includes(':')) {
+          console.error('Invalid series ID format for MediaFusion:', id);
+          return null;
+        }
+
+        // Extract IMDB ID and validate format
+        const [imdbId, season, episode] = id.split(':');
+        if (!imdbId || !season || !episode) {
+          console.error('Invalid series ID components for MediaFusion:', { imdbId, season, episode });
+          return null;
+        }
+
+        // Ensure IMDB ID starts with 'tt'
+        const formattedImdbId = imdbId.startsWith('tt') ? imdbId : `tt${imdbId}`;
+        streamUrl = `${baseMediaFusionUrl}/stream/series/${formattedImdbId}:${season}:${episode}.json`;
+      } else {
+        streamUrl = `${baseMediaFusionUrl}/stream/${type}/${id}.json`;
+      }
+
+      console.log(`Fetching MediaFusion streams from: ${streamUrl}`);
+    } else {
+      streamUrl = `${baseUrl}/stream/${type}/${id}.json${queryParams}`;
+    }
+    return streamUrl;
+  }
+
+  private toStreamResponse(addon: Manifest, streams: any[] | undefined, type: string, id: string): StreamResponse | null {
+    if (!streams?.length) {
+      console.log(`No streams found from ${addon.name} for ${type}/${id}`);
+      return null;
+    }
+
+    // Process streams based on addon type
+    let processedStreams = this.processStreams(streams, addon);
+    
+    // Additional processing for MediaFusion streams
+    if (addon.name?.toLowerCase().includes('mediafusion')) {
+      processedStreams = processedStreams.map(stream => {
+        // Extract quality from the stream name if available
+        const quality = stream.name?.match(/\d{3,4}[pP]/)?.[0] || '';
+        const originalName = stream.name || stream.title || '';
+        
+        return {
+          ...stream,
+          // Keep the original name which contains full info
+          name: originalName,
+          // Set a clean title that shows it's from MediaFusion
+          title: quality ? `MediaFusion • ${quality}` : 'MediaFusion Stream',
+          behaviorHints: {
+            ...stream.behaviorHints,
+            // MediaFusion streams are typically web-ready
+            notWebReady: false,
+            proxyHeaders: stream.behaviorHints?.proxyHeaders || {},
+            // Add quality info to behavior hints if needed
+            quality: quality
+          }
+        };
+      });
+    }
+    
+    return processedStreams.length > 0 ? { streams: processedStreams } : null;
+  }
+
   private processStreams(streams: any[], addon: Manifest): Stream[] {
     return streams
       .filter(stream => {
@@ -730,8 +913,7 @@ class StremioService {
 
   async getMeta(type: string, id: string): Promise<Meta | null> {
     try {
-      const response = await axios.get(`https://v3-cinemeta.strem.io/meta/${type}/${id}.json`);
-      return response.data;
+      return await getAddonJson<Meta>(`https://v3-cinemeta.strem.io/meta/${type}/${id}.json`);
     } catch (error) {
       console.error('Error fetching meta:', error);
       return null;